@@ -120,33 +120,23 @@ public class GenerateRandomGraph {
 
 		String start = "digraph mapgraph {";
 		String nodeTemplate = "n%d[p=\"%.1f,%.1f\"]";
-		String nodeAposTemplate = "n%d[p='%.1f,%.1f']";
 		String edgeTemplate = "n%d -> n%d[d=\"%.1f\"]";
-		String edgeAposTemplate = "n%d -> n%d[d='%.1f']";
 		String end = "}";
 
 		PrintWriter pw = new PrintWriter("maps\\" + filename + ".dot");
-		PrintWriter pwapos = new PrintWriter("maps\\" + filename + ".dotapos");
 
 		pw.println(start);
-		pwapos.println(start);
 		for (Node n : nodes) {
 			String node = String.format(Locale.ENGLISH, nodeTemplate, n.num, n.x, n.y);
 			pw.println(node);
-			String nodeApos = String.format(Locale.ENGLISH, nodeAposTemplate, n.num, n.x, n.y);
-			pwapos.println(nodeApos);
 		}
 
 		for (Edge e : edges) {
 			String edge = String.format(Locale.ENGLISH, edgeTemplate, e.e1.num, e.e2.num, 300.0f);
 			pw.println(edge);
-			String edgeApos = String.format(Locale.ENGLISH, edgeAposTemplate, e.e1.num, e.e2.num, 300.0f);
-			pwapos.println(edgeApos);
 		}
 		pw.println(end);
-		pwapos.println(end);
 		pw.close();
-		pwapos.close();
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,95 @@
+package taxi;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Draws indices with probabilities proportional to a fixed set of weights,
+ * in constant time whatever the number of weights (Walker's alias method,
+ * built with Vose's algorithm in linear time).
+ * <p>
+ * Every index i owns a column of height 1: with probability prob[i] the
+ * column is i itself, otherwise it is alias[i]. A draw picks a column
+ * uniformly and then one of its two parts, so it takes one int and one
+ * double from the random generator.
+ */
+final class AliasTable {
+
+	private final double[] prob;
+	private final int[] alias;
+
+	/**
+	 * @param weights not negative, at least one of them positive; indices
+	 * with weight 0 are never drawn
+	 * @throws IllegalArgumentException if the weights aren't valid
+	 */
+	AliasTable(double[] weights) {
+		int n = weights.length;
+		double total = 0;
+		for (double w: weights) {
+			if (!(w >= 0) || Double.isInfinite(w)) {
+				throw new IllegalArgumentException("Weight is not a positive number: " + w);
+			}
+			total += w;
+		}
+		if (!(total > 0)) {
+			throw new IllegalArgumentException("No positive weight");
+		}
+		prob = new double[n];
+		alias = new int[n];
+
+		// columns scaled to an average height of 1, split in those that are
+		// too low and those that are too high, both used as stacks
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallCount = 0;
+		int largeCount = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if (scaled[i] < 1) {
+				small[smallCount++] = i;
+			} else {
+				large[largeCount++] = i;
+			}
+		}
+		// fill up every low column with the rest of a high one
+		while (smallCount > 0 && largeCount > 0) {
+			int s = small[--smallCount];
+			int l = large[--largeCount];
+			prob[s] = scaled[s];
+			alias[s] = l;
+			scaled[l] = (scaled[l] + scaled[s]) - 1;
+			if (scaled[l] < 1) {
+				small[smallCount++] = l;
+			} else {
+				large[largeCount++] = l;
+			}
+		}
+		// what is left is 1 but for rounding errors
+		while (largeCount > 0) {
+			int l = large[--largeCount];
+			prob[l] = 1;
+			alias[l] = l;
+		}
+		while (smallCount > 0) {
+			int s = small[--smallCount];
+			prob[s] = 1;
+			alias[s] = s;
+		}
+	}
+
+	/**
+	 * @return number of weights
+	 */
+	int size() {
+		return prob.length;
+	}
+
+	/**
+	 * @return a random index, with a probability proportional to its weight
+	 */
+	int sample(RandomGenerator rng) {
+		int column = rng.nextInt(prob.length);
+		return rng.nextDouble() < prob[column] ? column : alias[column];
+	}
+}
@@ -0,0 +1,184 @@
+package taxi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.math3.random.MersenneTwister;
+
+/**
+ * Customers read from a trace file, one arrival per line:
+ *
+ * <pre>time,origin,destination</pre>
+ *
+ * with the time in ms and the n# of the pickup and delivery node, ordered by
+ * time. An optional header line (exactly HEADER) before the first arrival,
+ * empty lines and lines starting with # are skipped. The
+ * file is streamed: only the next arrival is read ahead, so traces of any
+ * length take constant memory, and asking for the next arrival time is a
+ * field read.
+ * <p>
+ * A trace of the regular demand of the examples can be generated with
+ *
+ * <pre>java taxi.ArrivalTrace maps/leuven.dot leuven-trace.csv [seed]</pre>
+ */
+public final class ArrivalTrace implements DemandSource {
+
+	public static final String HEADER = "time,origin,destination";
+
+	private final BufferedReader in;
+	private final Path file;
+	private final int nodes;
+	private int lineNumber;
+
+	/**
+	 * Arrival read ahead, nextTime is Long.MAX_VALUE at the end of the file
+	 */
+	private long nextTime;
+	private int nextOrigin;
+	private int nextDestination;
+
+	private int origin = -1;
+	private int destination = -1;
+
+	/**
+	 * Opens a trace and reads its first arrival.
+	 *
+	 * @param file
+	 * @param map the nodes of the trace have to be nodes of map
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the first line isn't valid
+	 */
+	public ArrivalTrace(Path file, RoadGraph map) throws IOException {
+		this.file = file;
+		this.nodes = map.nodeCount();
+		this.in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+		this.nextTime = Long.MIN_VALUE;
+		readAhead();
+	}
+
+	/**
+	 * Writes a trace of the regular demand of the default scenario (see
+	 * RegularDemand).
+	 *
+	 * @param args map, output file and optionally a random seed
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("usage: ArrivalTrace <map> <trace.csv> [seed]");
+			System.exit(1);
+		}
+		RoadGraph map = MapCache.get(args[0]);
+		Scenario scenario = Scenario.builder(Scenario.Algorithm.GRADIENT).build();
+		long seed = args.length >= 3 ? Long.parseLong(args[2]) : scenario.seed;
+		try (DemandSource demand = RegularDemand.of(scenario, map, new MersenneTwister(seed))) {
+			long arrivals = write(demand, Paths.get(args[1]));
+			System.out.println(arrivals + " arrivals written to " + args[1]);
+		}
+	}
+
+	/**
+	 * Writes all remaining arrivals of a source as a trace.
+	 *
+	 * @param demand a source with a finite number of arrivals
+	 * @param file created or overwritten
+	 * @return number of arrivals written
+	 * @throws IOException
+	 */
+	public static long write(DemandSource demand, Path file) throws IOException {
+		long arrivals = 0;
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write(HEADER + "\n");
+			StringBuilder line = new StringBuilder(32);
+			while (demand.nextArrivalTime() != Long.MAX_VALUE) {
+				long time = demand.nextArrivalTime();
+				demand.next();
+				line.setLength(0);
+				line.append(time).append(',').append(demand.origin()).append(',')
+					.append(demand.destination()).append('\n');
+				out.append(line);
+				arrivals++;
+			}
+		}
+		return arrivals;
+	}
+
+	@Override
+	public long nextArrivalTime() {
+		return nextTime;
+	}
+
+	@Override
+	public void next() {
+		origin = nextOrigin;
+		destination = nextDestination;
+		try {
+			readAhead();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public int origin() {
+		return origin;
+	}
+
+	@Override
+	public int destination() {
+		return destination;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private void readAhead() throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			if (line.isEmpty() || line.charAt(0) == '#') { continue; }
+			// header, before the first arrival
+			if (nextTime == Long.MIN_VALUE && line.equals(HEADER)) { continue; }
+			parse(line);
+			return;
+		}
+		nextTime = Long.MAX_VALUE;
+	}
+
+	private void parse(String line) {
+		int first = line.indexOf(',');
+		int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+		if (second < 0) {
+			throw invalid("expected time,origin,destination");
+		}
+		long time;
+		try {
+			time = Long.parseLong(line.substring(0, first).trim());
+			nextOrigin = Integer.parseInt(line.substring(first + 1, second).trim());
+			nextDestination = Integer.parseInt(line.substring(second + 1).trim());
+		} catch (NumberFormatException e) {
+			throw invalid(e.getMessage());
+		}
+		if (time < 0) {
+			throw invalid("negative time");
+		}
+		if (time < nextTime) {
+			throw invalid("arrivals are not ordered by time");
+		}
+		if (nextOrigin < 0 || nextOrigin >= nodes || nextDestination < 0 || nextDestination >= nodes) {
+			throw invalid("not a node of the map");
+		}
+		nextTime = time;
+	}
+
+	private IllegalArgumentException invalid(String reason) {
+		return new IllegalArgumentException(file + ":" + lineNumber + ": " + reason);
+	}
+}
@@ -0,0 +1,151 @@
+package taxi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary map format that can be memory-mapped, so a simulation 
+ * doesn't have to parse text on every start. Compile a map once with
+ * 
+ * <pre>java taxi.BinaryMap maps/leuven.dot maps/leuven.bmap</pre>
+ * 
+ * and pass the .bmap file wherever a .dot map is expected.
+ * 
+ * Layout (little endian): a header with magic, version, number of nodes and
+ * edges; then x and y of every node, the edge lengths and maximum speeds as
+ * doubles, and the CSR offsets and targets as ints. Values are stored 
+ * exactly as the .dot reader parses them, so a simulation gives the same 
+ * results on either format.
+ */
+public final class BinaryMap {
+	
+	public static final String EXTENSION = ".bmap";
+	
+	private static final int MAGIC = 0x4B4D4150; // "KMAP"
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 4 * 4;
+	
+	private BinaryMap() {}
+	
+	/**
+	 * Compiles a .dot map to the binary format.
+	 * 
+	 * @param args input .dot file and output file
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("usage: BinaryMap <map.dot> <map" + EXTENSION + ">");
+			System.exit(1);
+		}
+		RoadGraph graph = DotMapReader.read(args[0]);
+		write(graph, Paths.get(args[1]));
+		System.out.println(String.format("%d nodes, %d edges written to %s", 
+				graph.nodeCount(), graph.edgeCount(), args[1]));
+	}
+	
+	/**
+	 * Reads a map in whichever format the file name indicates.
+	 * 
+	 * @param file .dot or .bmap file
+	 * @return
+	 * @throws IOException
+	 */
+	public static RoadGraph load(String file) throws IOException {
+		if (file.endsWith(EXTENSION)) {
+			return read(Paths.get(file));
+		}
+		return DotMapReader.read(file);
+	}
+	
+	public static void write(RoadGraph graph, Path file) throws IOException {
+		int nodes = graph.nodeCount();
+		int edges = graph.edgeCount();
+		
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(nodes, edges));
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(nodes).putInt(edges);
+			for (int i = 0; i < nodes; i++) {
+				buffer.putDouble(graph.x(i));
+			}
+			for (int i = 0; i < nodes; i++) {
+				buffer.putDouble(graph.y(i));
+			}
+			for (int e = 0; e < edges; e++) {
+				buffer.putDouble(graph.length(e));
+			}
+			for (int e = 0; e < edges; e++) {
+				buffer.putDouble(graph.maxSpeed(e));
+			}
+			for (int i = 0; i < nodes; i++) {
+				buffer.putInt(graph.firstEdge(i));
+			}
+			buffer.putInt(edges);
+			for (int e = 0; e < edges; e++) {
+				buffer.putInt(graph.target(e));
+			}
+			buffer.force();
+		}
+	}
+	
+	/**
+	 * @return size in bytes of a file with the given number of nodes and 
+	 * edges
+	 */
+	private static long size(long nodes, long edges) {
+		return HEADER_SIZE + 8 * (2 * nodes + 2 * edges) + 4 * (nodes + 1 + edges);
+	}
+	
+	public static RoadGraph read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException(file + " is not a compiled map");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException(file + " is not a compiled map");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException(file + " has version " + version + ", expected " + VERSION);
+			}
+			int nodes = buffer.getInt();
+			int edges = buffer.getInt();
+			if (nodes < 0 || edges < 0 || channel.size() != size(nodes, edges)) {
+				throw new IOException(file + " is truncated or corrupt: " + channel.size() 
+						+ " bytes for " + nodes + " nodes and " + edges + " edges");
+			}
+			
+			double[] xs = readDoubles(buffer, nodes);
+			double[] ys = readDoubles(buffer, nodes);
+			double[] lengths = readDoubles(buffer, edges);
+			double[] maxSpeeds = readDoubles(buffer, edges);
+			
+			int[] offsets = new int[nodes + 1];
+			buffer.asIntBuffer().get(offsets);
+			buffer.position(buffer.position() + 4 * offsets.length);
+			int[] targets = new int[edges];
+			buffer.asIntBuffer().get(targets);
+			
+			return RoadGraph.fromArrays(xs, ys, offsets, targets, lengths, maxSpeeds);
+		}
+	}
+	
+	private static double[] readDoubles(ByteBuffer buffer, int count) {
+		double[] values = new double[count];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + 8 * count);
+		return values;
+	}
+}
@@ -6,6 +6,19 @@ import com.github.rinde.rinsim.core.model.pdp.ParcelDTO;
 import com.github.rinde.rinsim.core.model.road.RoadModel;
 
 public class Customer extends Parcel {
+	
+	/**
+	 * Slot in the waiting customer registry, -1 if the customer isn't 
+	 * waiting.
+	 */
+	int registrySlot = -1;
+	
+	/**
+	 * Slot of the customer's record in the SimpleLogger, given when it is
+	 * registered, -1 before that and after its record was spilled.
+	 */
+	int id = -1;
+	
 	Customer(ParcelDTO dto) {
 		super(dto);
 	}
@@ -0,0 +1,34 @@
+package taxi;
+
+import java.io.Closeable;
+
+/**
+ * Customers arriving during a simulation, in order of time. A source is 
+ * read like a cursor: next() moves to the next arrival, whose nodes are 
+ * then available until the following call. Sources may read or generate 
+ * their arrivals lazily, only nextArrivalTime() is asked every tick.
+ */
+public interface DemandSource extends Closeable {
+
+	/**
+	 * @return time of the arrival next() moves to, Long.MAX_VALUE if there 
+	 * are no more arrivals
+	 */
+	long nextArrivalTime();
+
+	/**
+	 * Moves to the next arrival. Only allowed if nextArrivalTime() isn't
+	 * Long.MAX_VALUE.
+	 */
+	void next();
+
+	/**
+	 * @return n# of the node where the current customer waits
+	 */
+	int origin();
+
+	/**
+	 * @return n# of the node the current customer wants to go to
+	 */
+	int destination();
+}
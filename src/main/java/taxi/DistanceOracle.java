@@ -0,0 +1,272 @@
+package taxi;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Length of the shortest route between every pair of nodes of a map,
+ * computed once and stored in a file that is memory-mapped, so the table
+ * lives outside of the heap and JVMs running on the same map share it
+ * through the page cache. Compile a table once with
+ *
+ * <pre>java taxi.DistanceOracle maps/leuven.dot maps/leuven.dist</pre>
+ *
+ * or let load() create it next to the map on first use. The table has
+ * nodeCount^2 entries, so it is meant for city sized maps.
+ *
+ * Layout (little endian): a header with magic, version, number of nodes, a
+ * fingerprint of the graph and the minimum route ratio (see 
+ * minRouteRatio()), then one row of floats per destination node:
+ * entry from of row to is the length of the route from -> to, infinity if
+ * there is none. Storing rows by destination means all routes leading to a
+ * node, which is what the gradient field needs, are read sequentially.
+ */
+public final class DistanceOracle {
+
+	public static final String EXTENSION = ".dist";
+
+	private static final int MAGIC = 0x4B445354; // "KDST"
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 32;
+
+	/**
+	 * A single mapping can't be larger than 2GB, larger tables are mapped in
+	 * chunks of whole rows of at most this size.
+	 */
+	private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+	private final int nodes;
+	private final int rowsPerChunk;
+	private final FloatBuffer[] chunks;
+	private final double minRouteRatio;
+
+	private DistanceOracle(int nodes, int rowsPerChunk, FloatBuffer[] chunks, double minRouteRatio) {
+		this.nodes = nodes;
+		this.rowsPerChunk = rowsPerChunk;
+		this.chunks = chunks;
+		this.minRouteRatio = minRouteRatio;
+	}
+
+	/**
+	 * Compiles the distance table of a map.
+	 *
+	 * @param args input map file (.dot or compiled) and output file
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("usage: DistanceOracle <map> <map" + EXTENSION + ">");
+			System.exit(1);
+		}
+		RoadGraph graph = BinaryMap.load(args[0]);
+		write(graph, Paths.get(args[1]));
+		System.out.println(String.format("%d x %d distances written to %s",
+				graph.nodeCount(), graph.nodeCount(), args[1]));
+	}
+
+	/**
+	 * Opens the table stored next to the map file (same name, EXTENSION as
+	 * extension). The table is computed first if it doesn't exist yet or was
+	 * computed for a different version of the map.
+	 *
+	 * @param mapFile file the graph was loaded from
+	 * @param graph
+	 * @return
+	 * @throws IOException
+	 */
+	public static DistanceOracle load(String mapFile, RoadGraph graph) throws IOException {
+		int dot = mapFile.lastIndexOf('.');
+		Path file = Paths.get((dot > 0 ? mapFile.substring(0, dot) : mapFile) + EXTENSION);
+		if (!Files.exists(file) || !matches(file, graph)) {
+			// other processes only ever see a complete table
+			Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), "dist", ".tmp");
+			try {
+				write(graph, tmp);
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		}
+		return read(file, graph);
+	}
+
+	/**
+	 * Runs a Dijkstra search over the reversed graph from every node and
+	 * writes the results as rows of the table.
+	 *
+	 * @param graph
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(RoadGraph graph, Path file) throws IOException {
+		int n = graph.nodeCount();
+		int rowsPerChunk = rowsPerChunk(n);
+		RoadGraph reversed = graph.reversed();
+		double[] dist = new double[n];
+		NodeHeap heap = new NodeHeap(n);
+		double minRatio = Double.POSITIVE_INFINITY;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(0).putLong(fingerprint(graph));
+			header.force();
+
+			for (int first = 0; first < n; first += rowsPerChunk) {
+				int rows = Math.min(rowsPerChunk, n - first);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+						HEADER_SIZE + 4L * first * n, 4L * rows * n);
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+				for (int to = first; to < first + rows; to++) {
+					shortestRoutesTo(reversed, to, dist, heap);
+					for (int from = 0; from < n; from++) {
+						float d = (float) dist[from];
+						buffer.putFloat(d);
+						double dx = graph.x(from) - graph.x(to);
+						double dy = graph.y(from) - graph.y(to);
+						double straight = Math.sqrt(dx * dx + dy * dy);
+						if (straight > 0 && d < Float.POSITIVE_INFINITY) {
+							minRatio = Math.min(minRatio, d / straight);
+						}
+					}
+				}
+				buffer.force();
+			}
+			// no pair of distinct positions that are connected: any ratio holds
+			header.putDouble(24, minRatio == Double.POSITIVE_INFINITY ? 1 : minRatio);
+			header.force();
+		}
+	}
+
+	/**
+	 * Fills dist with the length of the shortest route from every node to
+	 * target.
+	 */
+	private static void shortestRoutesTo(RoadGraph reversed, int target, double[] dist, NodeHeap heap) {
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		heap.clear();
+		dist[target] = 0;
+		heap.push(target, 0);
+		while (!heap.isEmpty()) {
+			double d = heap.peekKey();
+			int node = heap.pop();
+			if (d > dist[node]) { continue; }
+			for (int e = reversed.firstEdge(node); e < reversed.endEdge(node); e++) {
+				int from = reversed.target(e);
+				double alt = d + reversed.length(e);
+				if (alt < dist[from]) {
+					dist[from] = alt;
+					heap.push(from, alt);
+				}
+			}
+		}
+	}
+
+	public static DistanceOracle read(Path file, RoadGraph graph) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (!matches(channel, graph)) {
+				throw new IOException(file + " is not a distance table of this map");
+			}
+			int n = graph.nodeCount();
+			int rowsPerChunk = rowsPerChunk(n);
+			FloatBuffer[] chunks = new FloatBuffer[n == 0 ? 0 : (n - 1) / rowsPerChunk + 1];
+			for (int i = 0; i < chunks.length; i++) {
+				int rows = Math.min(rowsPerChunk, n - i * rowsPerChunk);
+				// the mapping stays valid after the channel is closed
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE + 4L * i * rowsPerChunk * n, 4L * rows * n);
+				chunks[i] = buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+			}
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			double minRouteRatio = header.order(ByteOrder.LITTLE_ENDIAN).getDouble(24);
+			return new DistanceOracle(n, rowsPerChunk, chunks, minRouteRatio);
+		}
+	}
+
+	private static boolean matches(Path file, RoadGraph graph) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return matches(channel, graph);
+		}
+	}
+
+	private static boolean matches(FileChannel channel, RoadGraph graph) throws IOException {
+		long n = graph.nodeCount();
+		if (channel.size() != HEADER_SIZE + 4 * n * n) { return false; }
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		return header.getInt() == MAGIC && header.getInt() == VERSION && header.getInt() == n
+				&& header.getInt() == 0 && header.getLong() == fingerprint(graph);
+	}
+
+	/**
+	 * Hash of the edges and their lengths, so that a table isn't used with
+	 * a map that was changed after the table was computed.
+	 */
+	private static long fingerprint(RoadGraph graph) {
+		long hash = graph.nodeCount();
+		for (int node = 0; node < graph.nodeCount(); node++) {
+			hash = hash * 31 + graph.degree(node);
+			for (int e = graph.firstEdge(node); e < graph.endEdge(node); e++) {
+				hash = hash * 31 + graph.target(e);
+				hash = hash * 31 + Float.floatToIntBits((float) graph.length(e));
+			}
+		}
+		return hash;
+	}
+
+	private static int rowsPerChunk(int nodes) {
+		return (int) Math.max(1, MAX_CHUNK_BYTES / (4L * Math.max(nodes, 1)));
+	}
+
+	public int nodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * Smallest ratio of route length to straight line distance over all
+	 * pairs of nodes with a route between them. Route lengths and
+	 * coordinates of a map don't need to be in the same unit (on the
+	 * bundled maps routes are about 100 times shorter than the straight
+	 * line), this ratio is what converts a straight line distance into a
+	 * lower bound of route lengths:
+	 *
+	 * <pre>distance(from, to) >= minRouteRatio() * |from - to|</pre>
+	 */
+	public double minRouteRatio() {
+		return minRouteRatio;
+	}
+
+	/**
+	 * @param from n# of a node
+	 * @param to n# of a node
+	 * @return length of the shortest route from -> to, infinity if to can't
+	 * be reached
+	 */
+	public double distance(int from, int to) {
+		return chunks[to / rowsPerChunk].get((to % rowsPerChunk) * nodes + from);
+	}
+
+	/**
+	 * Travel time of a vehicle that drives at a constant speed. Speed limits
+	 * of the edges are not taken into account.
+	 *
+	 * @param from n# of a node
+	 * @param to n# of a node
+	 * @param speed in distance units per time unit
+	 * @return time units needed to drive from -> to, infinity if to can't be
+	 * reached
+	 */
+	public double eta(int from, int to, double speed) {
+		return distance(from, to) / speed;
+	}
+}
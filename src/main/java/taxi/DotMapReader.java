@@ -0,0 +1,245 @@
+package taxi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Reads a .dot map in a single streaming pass. Nodes (n#[p="x,y"]) and edges
+ * (n# -> n#[d="length", s="max speed"]) can appear in any order and either 
+ * quote style is accepted, so the map files can be read as they are. 
+ * Self cycles are dropped, like RinSim's Filters.selfCycleFilter() does.
+ * Node ids have to run from n0 to n(count - 1) and every edge has to lead
+ * between declared nodes, errors name the line they were found on.
+ * 
+ * The result is a RoadGraph, which is used by the gradient field and also 
+ * converts itself into the graph for RinSim's road model, so the file is 
+ * only scanned once.
+ */
+public final class DotMapReader {
+	
+	private final StreamTokenizer tokens;
+	private final RoadGraph.Builder builder;
+	private final String name;
+	
+	/**
+	 * Per node id: the line it was declared on, or minus the line of the 
+	 * first edge that uses it while it isn't declared yet, 0 if neither
+	 */
+	private int[] lines = new int[64];
+	private int maxId = -1;
+	
+	private DotMapReader(Reader reader, String name) {
+		this.name = name;
+		builder = new RoadGraph.Builder();
+		tokens = new StreamTokenizer(reader);
+		tokens.resetSyntax();
+		tokens.wordChars('a', 'z');
+		tokens.wordChars('A', 'Z');
+		tokens.wordChars('0', '9');
+		tokens.wordChars('_', '_');
+		tokens.wordChars('.', '.');
+		tokens.whitespaceChars(0, ' ');
+		tokens.quoteChar('"');
+		tokens.quoteChar('\'');
+	}
+	
+	/**
+	 * @param file Path to the .dot file
+	 * @return
+	 * @throws IOException if the file can't be read or isn't a map
+	 */
+	public static RoadGraph read(String file) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), Charset.forName("ISO-8859-1"))) {
+			return read(reader, file);
+		}
+	}
+	
+	/**
+	 * @param reader
+	 * @param name Used in error messages
+	 * @return
+	 * @throws IOException
+	 */
+	public static RoadGraph read(Reader reader, String name) throws IOException {
+		return new DotMapReader(reader, name).parse();
+	}
+	
+	private RoadGraph parse() throws IOException {
+		// digraph <name> {
+		expectWord();
+		expectWord();
+		expect('{');
+		
+		while (next() != '}') {
+			if (tokens.ttype == ';') { continue; }
+			int node = nodeId(currentWord());
+			
+			if (next() == '[') {
+				readNode(node);
+			} else {
+				tokens.pushBack();
+				expect('-');
+				expect('>');
+				int target = nodeId(expectWord());
+				used(node);
+				used(target);
+				if (next() == '[') {
+					readEdge(node, target);
+				} else {
+					tokens.pushBack();
+					if (node != target) {
+						builder.addEdge(node, target);
+					}
+				}
+			}
+		}
+		
+		for (int id = 0; id <= maxId; id++) {
+			if (lines[id] < 0) {
+				throw new IOException(name + ":" + -lines[id] + ": node n" + id + " is never declared");
+			}
+			if (lines[id] == 0) {
+				throw new IOException(name + ": node n" + id + " is missing, node ids have to run from n0 to n" 
+						+ maxId);
+			}
+		}
+		return builder.build();
+	}
+	
+	/**
+	 * Remembers the current line for id if it isn't known yet.
+	 */
+	private void used(int id) {
+		grow(id);
+		if (lines[id] == 0) {
+			lines[id] = -tokens.lineno();
+		}
+	}
+	
+	private void grow(int id) {
+		if (id >= lines.length) {
+			lines = Arrays.copyOf(lines, Math.max(id + 1, lines.length * 2));
+		}
+		maxId = Math.max(maxId, id);
+	}
+	
+	private void readNode(int node) throws IOException {
+		String position = null;
+		do {
+			String key = expectWord();
+			String value = expectValue();
+			if (key.equals("p")) {
+				position = value;
+			}
+		} while (next() == ',');
+		checkCurrent(']');
+		
+		if (position == null) {
+			throw error("node n" + node + " has no position");
+		}
+		int comma = position.indexOf(',');
+		if (comma < 0) {
+			throw error("position of node n" + node + " isn't x,y: " + position);
+		}
+		double x = number(position.substring(0, comma), "x of node n" + node);
+		double y = number(position.substring(comma + 1), "y of node n" + node);
+		
+		grow(node);
+		if (lines[node] > 0) {
+			throw error("node n" + node + " is already declared on line " + lines[node]);
+		}
+		lines[node] = tokens.lineno();
+		builder.addNode(node, x, y);
+	}
+	
+	private void readEdge(int source, int target) throws IOException {
+		double length = Double.NaN;
+		double maxSpeed = Double.NaN;
+		do {
+			String key = expectWord();
+			String value = expectValue();
+			if (key.equals("d")) {
+				length = number(value, "length");
+			} else if (key.equals("s")) {
+				maxSpeed = number(value, "maximum speed");
+			}
+		} while (next() == ',');
+		checkCurrent(']');
+		
+		if (source != target) {
+			builder.addEdge(source, target, length, maxSpeed);
+		}
+	}
+	
+	private int nodeId(String word) throws IOException {
+		if (word.length() < 2 || word.charAt(0) != 'n') {
+			throw error("unexpected node name " + word);
+		}
+		try {
+			return Integer.parseInt(word.substring(1));
+		} catch (NumberFormatException e) {
+			throw error("unexpected node name " + word);
+		}
+	}
+	
+	private double number(String value, String what) throws IOException {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw error(what + " isn't a number: " + value);
+		}
+	}
+	
+	private int next() throws IOException {
+		int t = tokens.nextToken();
+		if (t == StreamTokenizer.TT_EOF) {
+			throw error("unexpected end of file");
+		}
+		return t;
+	}
+	
+	private void expect(char c) throws IOException {
+		next();
+		checkCurrent(c);
+	}
+	
+	private void checkCurrent(char c) throws IOException {
+		if (tokens.ttype != c) {
+			throw error("expected '" + c + "'");
+		}
+	}
+	
+	private String expectWord() throws IOException {
+		next();
+		return currentWord();
+	}
+	
+	private String currentWord() throws IOException {
+		if (tokens.ttype != StreamTokenizer.TT_WORD) {
+			throw error("expected a name");
+		}
+		return tokens.sval;
+	}
+	
+	/**
+	 * Reads ="value" or ='value'
+	 */
+	private String expectValue() throws IOException {
+		expect('=');
+		int t = next();
+		if (t != '"' && t != '\'') {
+			throw error("expected a quoted value");
+		}
+		return tokens.sval;
+	}
+	
+	private IOException error(String message) {
+		return new IOException(name + ":" + tokens.lineno() + ": " + message);
+	}
+}
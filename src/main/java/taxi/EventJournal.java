@@ -0,0 +1,223 @@
+package taxi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Journal of what happens during a simulation (new customers, pickups,
+ * deliveries, refills), written to a CSV file by a background thread.
+ * <p>
+ * Events are appended to a ring buffer of preallocated primitive records,
+ * so recording one neither allocates nor formats anything on the simulation
+ * thread. The writer thread turns them into lines of
+ *
+ * <pre>time,event,taxi,node,other</pre>
+ *
+ * where node is where it happened and other the destination node of a new
+ * customer; fields that don't apply are -1. Every event type can be turned
+ * off, which makes recording it a single array read.
+ * <p>
+ * Only one thread may record events (the simulation thread). If the writer
+ * falls behind and the buffer is full, recording waits for it.
+ */
+public final class EventJournal implements Closeable {
+
+	public enum Type {
+		CUSTOMER_REGISTERED, PICKUP, DELIVERY, REFILL
+	}
+
+	/**
+	 * Journal that records nothing and has no file or thread.
+	 */
+	public static final EventJournal OFF = new EventJournal();
+
+	private static final int DEFAULT_CAPACITY = 1 << 16;
+	private static final long IDLE_NANOS = 1000000;
+
+	private final boolean[] enabled;
+
+	/**
+	 * Ring buffer columns, record i is stored at index i & mask.
+	 */
+	private final long[] times;
+	private final byte[] types;
+	private final int[] taxis;
+	private final int[] nodes;
+	private final int[] others;
+	private final int mask;
+
+	/**
+	 * Records before head have been written, records from head up to tail
+	 * are waiting for the writer.
+	 */
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Only used, and closed, by the writer thread after the header
+	 */
+	private final Writer out;
+	private final Thread writer;
+	private volatile boolean closed;
+	/**
+	 * Set by the writer thread, read after it has ended
+	 */
+	private IOException failure;
+
+	private EventJournal() {
+		enabled = new boolean[Type.values().length];
+		times = new long[0];
+		types = new byte[0];
+		taxis = new int[0];
+		nodes = new int[0];
+		others = new int[0];
+		mask = 0;
+		out = null;
+		writer = null;
+		closed = true;
+	}
+
+	private EventJournal(Path file, int capacity, Type... types) throws IOException {
+		enabled = new boolean[Type.values().length];
+		for (Type t: types) {
+			enabled[t.ordinal()] = true;
+		}
+		int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		this.times = new long[size];
+		this.types = new byte[size];
+		this.taxis = new int[size];
+		this.nodes = new int[size];
+		this.others = new int[size];
+		this.mask = size - 1;
+
+		out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+		out.write("time,event,taxi,node,other\n");
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "event-journal " + file.getFileName());
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Opens a journal that writes to file.
+	 *
+	 * @param file created or overwritten
+	 * @param types the event types to record, all others are ignored
+	 * @return
+	 * @throws IOException
+	 */
+	public static EventJournal open(Path file, Type... types) throws IOException {
+		return new EventJournal(file, DEFAULT_CAPACITY, types);
+	}
+
+	public boolean isEnabled(Type type) {
+		return enabled[type.ordinal()];
+	}
+
+	/**
+	 * Records an event, if its type is enabled.
+	 *
+	 * @param type
+	 * @param time simulation time
+	 * @param taxi id of the taxi involved, -1 if none
+	 * @param node n# of the node where it happened, -1 if unknown
+	 * @param other n# of the destination of a new customer, otherwise -1
+	 */
+	public void record(Type type, long time, int taxi, int node, int other) {
+		if (!enabled[type.ordinal()]) { return; }
+
+		long t = tail.get();
+		while (t - head.get() > mask) {
+			// full, wait for the writer
+			LockSupport.parkNanos(IDLE_NANOS / 10);
+		}
+		int i = (int) t & mask;
+		times[i] = time;
+		types[i] = (byte) type.ordinal();
+		taxis[i] = taxi;
+		nodes[i] = node;
+		others[i] = other;
+		// publishes the record to the writer
+		tail.lazySet(t + 1);
+	}
+
+	private void drain() {
+		Type[] values = Type.values();
+		StringBuilder line = new StringBuilder(64);
+		try {
+			while (true) {
+				// read closed before tail, so nothing recorded before close
+				// can be missed
+				boolean last = closed;
+				long h = head.get();
+				long t = tail.get();
+				if (h == t) {
+					if (last) { break; }
+					out.flush();
+					LockSupport.parkNanos(IDLE_NANOS);
+					continue;
+				}
+				for (; h < t; h++) {
+					int i = (int) h & mask;
+					line.setLength(0);
+					line.append(times[i]).append(',').append(values[types[i]]).append(',')
+						.append(taxis[i]).append(',').append(nodes[i]).append(',')
+						.append(others[i]).append('\n');
+					out.append(line);
+				}
+				head.lazySet(t);
+			}
+		} catch (IOException e) {
+			failure = e;
+			// keep the simulation from waiting for a writer that is gone
+			Arrays.fill(enabled, false);
+			head.set(Long.MAX_VALUE / 2);
+		} finally {
+			try {
+				out.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes all recorded events and closes the file. Records nothing
+	 * afterwards. The writer thread closes the file once it has written 
+	 * everything, so if waiting for it is interrupted, it still finishes in
+	 * the background.
+	 *
+	 * @throws InterruptedIOException if interrupted before the file was
+	 * closed, the interrupt flag is kept
+	 * @throws IOException if writing the file failed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (writer == null || closed) { return; }
+		Arrays.fill(enabled, false);
+		closed = true;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while writing " + writer.getName());
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package taxi;
+
+/**
+ * Scenarios of the gradient and radio taxi examples. Kept apart from the
+ * example classes so that headless runs of them (see HeadlessSimulation)
+ * never load a UI class.
+ */
+final class ExampleScenarios {
+
+	static final long STANDARD_SIM_TIME = 8 * 60 * 60 * 1000;
+	static final String MAP_FILE = "maps/test.dot";
+
+	private static final int NUM_GAS_STATIONS = 1;
+	private static final int NUM_DEPOTS = 1;
+	/**
+	 * Initial number of customers
+	 */
+	private static final int NUM_CUSTOMERS = 0;
+
+	// per 100 node
+	private static final int TOTAL_CUSTOMER = 50 * 4;// *4 is for the
+														// manipulated version,
+														// with customers only
+														// spawning in the first
+														// 2 hours
+
+	/******************/
+
+	private static final int GRADIENT_TAXIS = 10;
+	private static final double SIGNAL_DROP = 2;
+	private static final double TAXI_VS_CUSTOMER = 0;
+	private static final GradientField.Mode FIELD_MODE = GradientField.Mode.EXACT;
+
+	/******************/
+
+	private static final int RADIO_TAXIS = 20;
+	private static final double RADIUS = 20000;
+	private static final RadioDispatcher.Mode DISPATCH_MODE = RadioDispatcher.Mode.GREEDY_RADIUS;
+	/**
+	 * Maximum number of customers matched per tick in BATCH dispatch mode
+	 */
+	private static final int DISPATCH_BATCH_SIZE = 100;
+
+	/******************/
+
+	/**
+	 * Let the field decay with, or dispatch by, route length instead of 
+	 * straight line distance, using the map's distance table (see 
+	 * DistanceOracle)
+	 */
+	private static final boolean NETWORK_DISTANCES = false;
+	/**
+	 * File the records of delivered customers are moved to during the run,
+	 * so long runs don't run out of memory. null keeps them in memory.
+	 */
+	private static final String SPILL_FILE = null;
+	/**
+	 * Every sample of the live metrics is also written to this file unless
+	 * it is null (see SimulationMetrics)
+	 */
+	private static final String METRICS_FILE = null;
+
+	private ExampleScenarios() {}
+
+	/**
+	 * @return the scenario of the gradient example, named "gradient", its 
+	 * events are written to gradient-events.csv (see EventJournal)
+	 */
+	static Scenario gradient(long endTime, String graphFile) {
+		return common(Scenario.builder(Scenario.Algorithm.GRADIENT), endTime, graphFile)
+				.taxis(GRADIENT_TAXIS)
+				.signalDrop(SIGNAL_DROP)
+				.taxiVSCustomer(TAXI_VS_CUSTOMER)
+				.fieldMode(FIELD_MODE)
+				.journalFile("gradient-events.csv")
+				.build();
+	}
+
+	/**
+	 * @return the scenario of the radio example, named "radio", its events
+	 * are written to radio-events.csv (see EventJournal)
+	 */
+	static Scenario radio(long endTime, String graphFile) {
+		return common(Scenario.builder(Scenario.Algorithm.RADIO), endTime, graphFile)
+				.taxis(RADIO_TAXIS)
+				.dispatchMode(DISPATCH_MODE)
+				.radius(RADIUS)
+				.dispatchBatchSize(DISPATCH_BATCH_SIZE)
+				.journalFile("radio-events.csv")
+				.build();
+	}
+
+	private static Scenario.Builder common(Scenario.Builder b, long endTime, String graphFile) {
+		return b.mapFile(graphFile)
+				.endTime(endTime)
+				.depots(NUM_DEPOTS)
+				.gasStations(NUM_GAS_STATIONS)
+				.initialCustomers(NUM_CUSTOMERS)
+				.customersPer100Nodes(TOTAL_CUSTOMER)
+				.networkDistances(NETWORK_DISTANCES)
+				.spillFile(SPILL_FILE)
+				.metricsFile(METRICS_FILE)
+				.printStatistics(true);
+	}
+}
@@ -0,0 +1,95 @@
+package taxi;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a batch of scenarios (see Scenario) without a GUI, in parallel on a
+ * pool of worker threads, and writes one line of results per run:
+ *
+ * <pre>java taxi.ExperimentRunner scenarios.csv results.csv [threads]</pre>
+ *
+ * Every run has its own simulator and random generator, so the results of
+ * a scenario don't depend on the number of threads or on the other
+ * scenarios in the batch. Results are written in the order of the scenario
+ * file as soon as a run and all runs before it are done.
+ */
+public final class ExperimentRunner {
+
+	private static final String HEADER = "name,algorithm,seed,taxis,customers,delivered,"
+			+ "mean wait,sd wait,p50 wait,p95 wait,p99 wait,mean trip,sd trip,p95 trip,"
+			+ "mean distance,mean customers served,wall clock ms,error";
+
+	private ExperimentRunner() {}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.out.println("usage: ExperimentRunner <scenarios.csv> <results.csv> [threads]");
+			System.exit(1);
+		}
+		List<Scenario> scenarios = Scenario.load(Paths.get(args[0]));
+		int threads = args.length >= 3 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try (Writer out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+			out.write(HEADER + "\n");
+			List<Future<String>> results = new ArrayList<>();
+			for (final Scenario scenario: scenarios) {
+				results.add(pool.submit(new Callable<String>() {
+					@Override
+					public String call() {
+						TaxiSimulation simulation = TaxiSimulation.create(scenario);
+						simulation.run();
+						return resultRow(simulation);
+					}
+				}));
+			}
+			for (int i = 0; i < scenarios.size(); i++) {
+				String row;
+				try {
+					row = results.get(i).get();
+				} catch (ExecutionException e) {
+					e.getCause().printStackTrace();
+					row = failedRow(scenarios.get(i), e.getCause());
+				}
+				out.write(row + "\n");
+				out.flush();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	static String resultRow(TaxiSimulation simulation) {
+		Scenario s = simulation.getScenario();
+		SimpleLogger log = simulation.getLogger();
+		return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%f,%f,%f,%f,%f,%f,%f,%f,%f,%f,%d,",
+				s.name, s.algorithm, s.seed, s.taxis,
+				log.getNumberOfCustomers(), log.getNumberOfDeliveredCustomers(),
+				log.getMeanTimeFromRegisterToPickup(), log.getSDTimeFromRegisterToPickup(),
+				log.getPercentileTimeFromRegisterToPickup(50), log.getPercentileTimeFromRegisterToPickup(95),
+				log.getPercentileTimeFromRegisterToPickup(99),
+				log.getMeanTimeFromRegisterToDelivery(), log.getSDTimeFromRegisterToDelivery(),
+				log.getPercentileTimeFromRegisterToDelivery(95),
+				log.getMeanDistanceCoveredByTaxis(), log.getMeanNoOfCustomersServedByTaxis(),
+				simulation.getWallClockNanos() / 1000000);
+	}
+
+	static String failedRow(Scenario s, Throwable error) {
+		String message = String.valueOf(error).replace(',', ';').replace('\n', ' ');
+		return String.format(Locale.ROOT, "%s,%s,%d,%d,,,,,,,,,,,,,,%s",
+				s.name, s.algorithm, s.seed, s.taxis, message);
+	}
+}
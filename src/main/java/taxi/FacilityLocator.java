@@ -0,0 +1,172 @@
+package taxi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.github.rinde.rinsim.core.model.road.RoadUser;
+import com.github.rinde.rinsim.geom.Point;
+
+/**
+ * Nearest taxi base and gas station of every node, by distance over the road
+ * network. Facilities never move, so the tables are only recomputed (with a
+ * multi-source Dijkstra from all facilities of a kind) after one is added or
+ * removed. Looking up the nearest facility is then an array read.
+ * <p>
+ * Facilities have to stand on a node of the graph.
+ */
+public class FacilityLocator {
+
+	final RoadGraph graph;
+
+	/**
+	 * Same graph with its edges turned around, searched from the facilities
+	 */
+	private final RoadGraph reversed;
+
+	private final Partition<TaxiBase> bases;
+	private final Partition<GasStation> gasStations;
+
+	FacilityLocator(RoadGraph graph) {
+		this.graph = graph;
+		reversed = graph.reversed();
+		bases = new Partition<>();
+		gasStations = new Partition<>();
+	}
+
+	public void addBase(TaxiBase base, Point position) {
+		bases.add(base, nodeOf(position));
+	}
+
+	public void removeBase(TaxiBase base) {
+		bases.remove(base);
+	}
+
+	public void addGasStation(GasStation station, Point position) {
+		gasStations.add(station, nodeOf(position));
+	}
+
+	public void removeGasStation(GasStation station) {
+		gasStations.remove(station);
+	}
+
+	/**
+	 * @param node n# of a node
+	 * @return base with the shortest route from node, null if there are none
+	 */
+	public TaxiBase nearestBase(int node) {
+		return bases.nearest(node);
+	}
+
+	/**
+	 * @param node n# of a node
+	 * @return gas station with the shortest route from node, null if there
+	 * are none
+	 */
+	public GasStation nearestGasStation(int node) {
+		return gasStations.nearest(node);
+	}
+
+	private int nodeOf(Point position) {
+		int node = graph.nodeId(position);
+		if (node < 0) {
+			throw new IllegalArgumentException("Facility is not on a node: " + position);
+		}
+		return node;
+	}
+
+	/**
+	 * Facilities of one kind and the nearest one of every node.
+	 */
+	private final class Partition<T extends RoadUser> {
+		private final ArrayList<T> facilities = new ArrayList<>();
+		/**
+		 * Node of each facility, the first facilities.size() entries are used
+		 */
+		private int[] facilityNodes = new int[8];
+
+		/**
+		 * Index in facilities of the nearest facility of each node, -1 if no
+		 * facility can be reached from it. Only valid when not dirty.
+		 */
+		private int[] nearest;
+		private boolean dirty = true;
+
+		void add(T facility, int node) {
+			int size = facilities.size();
+			if (size == facilityNodes.length) {
+				facilityNodes = Arrays.copyOf(facilityNodes, size * 2);
+			}
+			facilityNodes[size] = node;
+			facilities.add(facility);
+			dirty = true;
+		}
+
+		void remove(T facility) {
+			int i = facilities.indexOf(facility);
+			if (i >= 0) {
+				facilities.remove(i);
+				System.arraycopy(facilityNodes, i + 1, facilityNodes, i, facilities.size() - i);
+				dirty = true;
+			}
+		}
+
+		T nearest(int node) {
+			if (facilities.isEmpty()) { return null; }
+			if (dirty) {
+				rebuild();
+			}
+			int i = nearest[node];
+			// not connected to any facility, fall back to the closest one in
+			// a straight line
+			if (i < 0) {
+				double best = Double.POSITIVE_INFINITY;
+				for (int j = 0; j < facilities.size(); j++) {
+					Point p = graph.position(facilityNodes[j]);
+					double dist = Point.distance(p, graph.position(node));
+					if (dist < best) {
+						best = dist;
+						i = j;
+					}
+				}
+			}
+			return facilities.get(i);
+		}
+
+		private void rebuild() {
+			int n = graph.nodeCount();
+			if (nearest == null) {
+				nearest = new int[n];
+			}
+			Arrays.fill(nearest, -1);
+			double[] dist = new double[n];
+			Arrays.fill(dist, Double.POSITIVE_INFINITY);
+			NodeHeap heap = new NodeHeap(n);
+			for (int i = 0; i < facilities.size(); i++) {
+				int node = facilityNodes[i];
+				// the first facility on a node wins
+				if (dist[node] > 0) {
+					dist[node] = 0;
+					nearest[node] = i;
+					heap.push(node, 0);
+				}
+			}
+			// grows over the reversed edges, so dist[node] is the length of
+			// the route from node to its facility
+			while (!heap.isEmpty()) {
+				double d = heap.peekKey();
+				int node = heap.pop();
+				if (d > dist[node]) { continue; }
+				for (int e = reversed.firstEdge(node); e < reversed.endEdge(node); e++) {
+					int from = reversed.target(e);
+					double alt = d + reversed.length(e);
+					if (alt < dist[from]) {
+						dist[from] = alt;
+						nearest[from] = nearest[node];
+						heap.push(from, alt);
+					}
+				}
+			}
+			dirty = false;
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package taxi;
+
+import java.util.Arrays;
+
+/**
+ * Barnes-Hut style approximation of the gradient field. Waiting customers 
+ * and active taxis are put in a quadtree where every cell knows how many 
+ * customers and taxis it holds and where their centroids are. A cell that is
+ * small compared to its distance from the sampled point (cell width less 
+ * than openingAngle times the distance) is evaluated as one customer term and
+ * one taxi term instead of one term per source. An opening angle of 0 gives
+ * the exact sum.
+ * 
+ * The tree is rebuilt from scratch with clear, add* and build, which reuses
+ * all arrays once they are large enough.
+ */
+final class FieldQuadtree {
+	
+	/**
+	 * Cells with this many sources or less are not split any further.
+	 */
+	private static final int LEAF_SIZE = 8;
+	
+	/**
+	 * Stops splitting when many sources share the same position.
+	 */
+	private static final int MAX_DEPTH = 24;
+	
+	private final double signalDrop;
+	private final double taxiVSCustomer;
+	private final double openingAngle;
+	
+	/**
+	 * Sources: coordinates and the index of the taxi in add order, -1 for a
+	 * customer. Reordered during build so that every cell covers a range.
+	 */
+	private double[] xs = new double[64];
+	private double[] ys = new double[64];
+	private int[] taxi = new int[64];
+	private int size;
+	
+	/**
+	 * Taxi coordinates by taxi index, used to take a taxi out of the cells 
+	 * containing it.
+	 */
+	private double[] taxiX = new double[16];
+	private double[] taxiY = new double[16];
+	private int taxis;
+	
+	/**
+	 * Cells. The children of cell c are firstChild[c] to firstChild[c] + 3,
+	 * or firstChild[c] is -1 for a leaf.
+	 */
+	private double[] minX = new double[64];
+	private double[] minY = new double[64];
+	private double[] width = new double[64];
+	private int[] firstChild = new int[64];
+	private int[] start = new int[64];
+	private int[] end = new int[64];
+	private int[] customerCount = new int[64];
+	private double[] customerSumX = new double[64];
+	private double[] customerSumY = new double[64];
+	private int[] taxiCount = new int[64];
+	private double[] taxiSumX = new double[64];
+	private double[] taxiSumY = new double[64];
+	private int cells;
+	
+	FieldQuadtree(double signalDrop, double taxiVSCustomer, double openingAngle) {
+		this.signalDrop = signalDrop;
+		this.taxiVSCustomer = taxiVSCustomer;
+		this.openingAngle = openingAngle;
+	}
+	
+	void clear() {
+		size = 0;
+		taxis = 0;
+		cells = 0;
+	}
+	
+	void addCustomer(double x, double y) {
+		add(x, y, -1);
+	}
+	
+	/**
+	 * Adds a taxi. Taxis are numbered in the order they're added.
+	 */
+	void addTaxi(double x, double y) {
+		if (taxis == taxiX.length) {
+			taxiX = Arrays.copyOf(taxiX, taxis * 2);
+			taxiY = Arrays.copyOf(taxiY, taxis * 2);
+		}
+		taxiX[taxis] = x;
+		taxiY[taxis] = y;
+		add(x, y, taxis++);
+	}
+	
+	private void add(double x, double y, int taxiIndex) {
+		if (size == xs.length) {
+			xs = Arrays.copyOf(xs, size * 2);
+			ys = Arrays.copyOf(ys, size * 2);
+			taxi = Arrays.copyOf(taxi, size * 2);
+		}
+		xs[size] = x;
+		ys[size] = y;
+		taxi[size] = taxiIndex;
+		size++;
+	}
+	
+	void build() {
+		cells = 0;
+		if (size == 0) { return; }
+		
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < size; i++) {
+			x0 = Math.min(x0, xs[i]);
+			y0 = Math.min(y0, ys[i]);
+			x1 = Math.max(x1, xs[i]);
+			y1 = Math.max(y1, ys[i]);
+		}
+		// cells are squares, slightly larger than the bounding box so that 
+		// every source is strictly inside
+		double w = Math.max(Math.max(x1 - x0, y1 - y0), 1) * 1.001;
+		build(newCell(x0, y0, w, 0, size), 0);
+	}
+	
+	private int newCell(double x, double y, double w, int from, int to) {
+		if (cells == minX.length) {
+			int length = cells * 2;
+			minX = Arrays.copyOf(minX, length);
+			minY = Arrays.copyOf(minY, length);
+			width = Arrays.copyOf(width, length);
+			firstChild = Arrays.copyOf(firstChild, length);
+			start = Arrays.copyOf(start, length);
+			end = Arrays.copyOf(end, length);
+			customerCount = Arrays.copyOf(customerCount, length);
+			customerSumX = Arrays.copyOf(customerSumX, length);
+			customerSumY = Arrays.copyOf(customerSumY, length);
+			taxiCount = Arrays.copyOf(taxiCount, length);
+			taxiSumX = Arrays.copyOf(taxiSumX, length);
+			taxiSumY = Arrays.copyOf(taxiSumY, length);
+		}
+		int c = cells++;
+		minX[c] = x;
+		minY[c] = y;
+		width[c] = w;
+		firstChild[c] = -1;
+		start[c] = from;
+		end[c] = to;
+		
+		int customers = 0, taxisInCell = 0;
+		double cx = 0, cy = 0, tx = 0, ty = 0;
+		for (int i = from; i < to; i++) {
+			if (taxi[i] < 0) {
+				customers++;
+				cx += xs[i];
+				cy += ys[i];
+			} else {
+				taxisInCell++;
+				tx += xs[i];
+				ty += ys[i];
+			}
+		}
+		customerCount[c] = customers;
+		customerSumX[c] = cx;
+		customerSumY[c] = cy;
+		taxiCount[c] = taxisInCell;
+		taxiSumX[c] = tx;
+		taxiSumY[c] = ty;
+		return c;
+	}
+	
+	private void build(int c, int depth) {
+		int from = start[c];
+		int to = end[c];
+		if (to - from <= LEAF_SIZE || depth == MAX_DEPTH) { return; }
+		
+		double half = width[c] / 2;
+		double midX = minX[c] + half;
+		double midY = minY[c] + half;
+		
+		// split on x, then split both halves on y
+		int splitX = partition(from, to, true, midX);
+		int splitLow = partition(from, splitX, false, midY);
+		int splitHigh = partition(splitX, to, false, midY);
+		
+		// children have to be allocated next to each other
+		int first = newCell(minX[c], minY[c], half, from, splitLow);
+		newCell(minX[c], midY, half, splitLow, splitX);
+		newCell(midX, minY[c], half, splitX, splitHigh);
+		newCell(midX, midY, half, splitHigh, to);
+		firstChild[c] = first;
+		
+		for (int k = 0; k < 4; k++) {
+			build(first + k, depth + 1);
+		}
+	}
+	
+	/**
+	 * Moves sources below the split value in front of the others.
+	 * 
+	 * @return index of the first source at or above the split value
+	 */
+	private int partition(int from, int to, boolean onX, double split) {
+		int i = from;
+		int j = to - 1;
+		while (i <= j) {
+			double v = onX ? xs[i] : ys[i];
+			if (v < split) {
+				i++;
+			} else {
+				swap(i, j--);
+			}
+		}
+		return i;
+	}
+	
+	private void swap(int i, int j) {
+		double x = xs[i]; xs[i] = xs[j]; xs[j] = x;
+		double y = ys[i]; ys[i] = ys[j]; ys[j] = y;
+		int t = taxi[i]; taxi[i] = taxi[j]; taxi[j] = t;
+	}
+	
+	/**
+	 * Approximates the field strength at (px, py).
+	 * 
+	 * @param px
+	 * @param py
+	 * @param excludedTaxi index of the taxi for which the field is being 
+	 * calculated, -1 if that taxi isn't in the tree
+	 * @return
+	 */
+	double strengthAt(double px, double py, int excludedTaxi) {
+		if (cells == 0) { return 0; }
+		return strengthAt(0, px, py, excludedTaxi);
+	}
+	
+	private double strengthAt(int c, double px, double py, int excludedTaxi) {
+		double w = width[c];
+		// distance from the point to the cell, 0 if the point is inside
+		double dx = Math.max(Math.max(minX[c] - px, px - (minX[c] + w)), 0);
+		double dy = Math.max(Math.max(minY[c] - py, py - (minY[c] + w)), 0);
+		double gap = Math.sqrt(dx * dx + dy * dy);
+		
+		if (gap > 0 && w < openingAngle * gap) {
+			return clusterStrength(c, px, py, excludedTaxi);
+		}
+		
+		if (firstChild[c] < 0) {
+			double sum = 0;
+			for (int i = start[c]; i < end[c]; i++) {
+				if (taxi[i] < 0) {
+					sum += 1 / Math.pow(distance(xs[i], ys[i], px, py), signalDrop);
+				} else if (taxi[i] != excludedTaxi) {
+					sum -= (1 / Math.pow(distance(xs[i], ys[i], px, py), signalDrop)) * taxiVSCustomer;
+				}
+			}
+			return sum;
+		}
+		
+		double sum = 0;
+		for (int k = firstChild[c]; k < firstChild[c] + 4; k++) {
+			if (end[k] > start[k]) {
+				sum += strengthAt(k, px, py, excludedTaxi);
+			}
+		}
+		return sum;
+	}
+	
+	/**
+	 * Evaluates all customers and all taxis in a cell as one term each, 
+	 * placed at their centroids.
+	 */
+	private double clusterStrength(int c, double px, double py, int excludedTaxi) {
+		double sum = 0;
+		
+		int customers = customerCount[c];
+		if (customers > 0) {
+			double d = distance(customerSumX[c] / customers, customerSumY[c] / customers, px, py);
+			sum += customers / Math.pow(d, signalDrop);
+		}
+		
+		int taxisInCell = taxiCount[c];
+		double tx = taxiSumX[c];
+		double ty = taxiSumY[c];
+		if (excludedTaxi >= 0 && contains(c, taxiX[excludedTaxi], taxiY[excludedTaxi])) {
+			taxisInCell--;
+			tx -= taxiX[excludedTaxi];
+			ty -= taxiY[excludedTaxi];
+		}
+		if (taxisInCell > 0 && taxiVSCustomer != 0) {
+			double d = distance(tx / taxisInCell, ty / taxisInCell, px, py);
+			sum -= taxisInCell / Math.pow(d, signalDrop) * taxiVSCustomer;
+		}
+		
+		return sum;
+	}
+	
+	/**
+	 * Same rule as partition: the lower bound belongs to the cell, the upper
+	 * bound doesn't.
+	 */
+	private boolean contains(int c, double x, double y) {
+		return x >= minX[c] && x < minX[c] + width[c] 
+				&& y >= minY[c] && y < minY[c] + width[c];
+	}
+	
+	private static double distance(double x0, double y0, double x1, double y1) {
+		double dx = x0 - x1;
+		double dy = y0 - y1;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+}
@@ -0,0 +1,123 @@
+package taxi;
+
+import java.util.Arrays;
+
+import com.github.rinde.rinsim.core.model.road.RoadModel;
+import com.github.rinde.rinsim.core.model.time.TickListener;
+import com.github.rinde.rinsim.core.model.time.TimeLapse;
+import com.github.rinde.rinsim.geom.Point;
+
+/**
+ * Positions of all active gradient taxis, taken once at the start of every 
+ * tick. Has to be added to the simulator before the taxis are registered, so
+ * that it ticks before them. The gradient field then reads these arrays 
+ * instead of querying the road model for every sampled point.
+ */
+public class FleetSnapshot implements TickListener {
+	
+	private final RoadModel roadModel;
+	private final FacilityLocator facilities;
+	
+	/**
+	 * Active taxis and their coordinates, only the first size entries are 
+	 * valid.
+	 */
+	private TaxiGradient[] taxis;
+	private double[] xs;
+	private double[] ys;
+	private int size;
+	
+	/**
+	 * Incremented every time a new snapshot is taken.
+	 */
+	private long version;
+	
+	FleetSnapshot(RoadModel roadModel, FacilityLocator facilities) {
+		this.roadModel = roadModel;
+		this.facilities = facilities;
+		this.taxis = new TaxiGradient[16];
+		this.xs = new double[16];
+		this.ys = new double[16];
+		this.size = 0;
+	}
+	
+	@Override
+	public void tick(TimeLapse time) {
+		size = 0;
+		for (TaxiGradient t: roadModel.getObjectsOfType(TaxiGradient.class)) {
+			Point position = roadModel.getPosition(t);
+			if (isActive(roadModel, facilities, t, position)) {
+				t.snapshotIndex = size;
+				add(t, position);
+			} else {
+				t.snapshotIndex = -1;
+			}
+		}
+		version++;
+	}
+	
+	@Override
+	public void afterTick(TimeLapse time) {}
+	
+	private void add(TaxiGradient t, Point position) {
+		if (size == taxis.length) {
+			taxis = Arrays.copyOf(taxis, size * 2);
+			xs = Arrays.copyOf(xs, size * 2);
+			ys = Arrays.copyOf(ys, size * 2);
+		}
+		taxis[size] = t;
+		xs[size] = position.x;
+		ys[size] = position.y;
+		size++;
+	}
+	
+	/**
+	 * @return number of active taxis at the start of this tick
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public long version() {
+		return version;
+	}
+	
+	/**
+	 * @param t
+	 * @return index of t in this snapshot, -1 if t isn't active
+	 */
+	public int indexOf(TaxiGradient t) {
+		return t.snapshotIndex;
+	}
+	
+	public TaxiGradient taxi(int i) {
+		return taxis[i];
+	}
+	
+	public double x(int i) {
+		return xs[i];
+	}
+	
+	public double y(int i) {
+		return ys[i];
+	}
+	
+	/**
+	 * Checks if the taxi isn't transporting somebody and isn't at the base.
+	 * 
+	 * @param rm
+	 * @param facilities
+	 * @param t
+	 * @param position current position of t
+	 * @return
+	 */
+	static boolean isActive(RoadModel rm, FacilityLocator facilities, TaxiGradient t, Point position) {
+		if (t.isDrivingACustomer()) { return false; }
+		// bases stand on nodes, so a taxi between two nodes isn't at one
+		int node = facilities.graph.nodeId(position);
+		if (node < 0) { return true; }
+		//find closest TaxiBase
+		TaxiBase base = facilities.nearestBase(node);
+		return base == null || !position.equals(rm.getPosition(base));
+	}
+}
@@ -0,0 +1,240 @@
+package taxi;
+
+import java.util.Arrays;
+
+import com.github.rinde.rinsim.geom.Point;
+
+/**
+ * Uniform grid of the taxis that are currently free. Taxis keep their own 
+ * entry up to date (see Taxi.tickImpl and Taxi.assignCustomer), so finding
+ * the nearest free taxi only looks at the cells around the customer instead
+ * of at every road user.
+ */
+public class FreeTaxiGrid {
+	
+	/**
+	 * Number of cells along the longest side of the map.
+	 */
+	private static final int CELLS_PER_SIDE = 64;
+	
+	private final double minX;
+	private final double minY;
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+	/**
+	 * Longest straight line distance between the two ends of an edge, how
+	 * far a taxi can be from its last node.
+	 */
+	private final double maxEdge;
+	
+	/**
+	 * Taxis per cell and their positions at the last update, only the first
+	 * counts[cell] entries are valid.
+	 */
+	private final Taxi[][] cells;
+	private final double[][] cellXs;
+	private final double[][] cellYs;
+	private final int[] counts;
+	private int size;
+	
+	/**
+	 * Covers the bounding box of the map. Taxis outside of it are put in the
+	 * nearest border cell.
+	 * 
+	 * @param map
+	 */
+	FreeTaxiGrid(RoadGraph map) {
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < map.nodeCount(); i++) {
+			x0 = Math.min(x0, map.x(i));
+			y0 = Math.min(y0, map.y(i));
+			x1 = Math.max(x1, map.x(i));
+			y1 = Math.max(y1, map.y(i));
+		}
+		double longest = 0;
+		for (int i = 0; i < map.nodeCount(); i++) {
+			for (int e = map.firstEdge(i); e < map.endEdge(i); e++) {
+				double dx = map.x(map.target(e)) - map.x(i);
+				double dy = map.y(map.target(e)) - map.y(i);
+				longest = Math.max(longest, Math.sqrt(dx * dx + dy * dy));
+			}
+		}
+		maxEdge = longest;
+		minX = x0;
+		minY = y0;
+		cellSize = Math.max(Math.max(x1 - x0, y1 - y0) / CELLS_PER_SIDE, 1);
+		columns = (int) ((x1 - x0) / cellSize) + 1;
+		rows = (int) ((y1 - y0) / cellSize) + 1;
+		cells = new Taxi[columns * rows][];
+		cellXs = new double[columns * rows][];
+		cellYs = new double[columns * rows][];
+		counts = new int[columns * rows];
+	}
+	
+	private int column(double x) {
+		return Math.min(Math.max((int) ((x - minX) / cellSize), 0), columns - 1);
+	}
+	
+	private int row(double y) {
+		return Math.min(Math.max((int) ((y - minY) / cellSize), 0), rows - 1);
+	}
+	
+	/**
+	 * Records the taxi's position if it's free, removes it from the grid 
+	 * otherwise.
+	 * 
+	 * @param t
+	 * @param position
+	 * @param free
+	 */
+	void update(Taxi t, Point position, boolean free) {
+		if (!free) {
+			remove(t);
+			return;
+		}
+		int cell = row(position.y) * columns + column(position.x);
+		if (cell != t.gridCell) {
+			remove(t);
+			
+			if (cells[cell] == null) {
+				cells[cell] = new Taxi[4];
+				cellXs[cell] = new double[4];
+				cellYs[cell] = new double[4];
+			} else if (counts[cell] == cells[cell].length) {
+				cells[cell] = Arrays.copyOf(cells[cell], counts[cell] * 2);
+				cellXs[cell] = Arrays.copyOf(cellXs[cell], counts[cell] * 2);
+				cellYs[cell] = Arrays.copyOf(cellYs[cell], counts[cell] * 2);
+			}
+			t.gridCell = cell;
+			t.gridSlot = counts[cell]++;
+			cells[cell][t.gridSlot] = t;
+			size++;
+		}
+		cellXs[cell][t.gridSlot] = position.x;
+		cellYs[cell][t.gridSlot] = position.y;
+	}
+	
+	/**
+	 * Takes the taxi out of the grid, if it's in it.
+	 * 
+	 * @param t
+	 */
+	void remove(Taxi t) {
+		int cell = t.gridCell;
+		if (cell < 0) { return; }
+		
+		// move the last taxi of the cell into the freed slot
+		int last = --counts[cell];
+		Taxi moved = cells[cell][last];
+		cells[cell][t.gridSlot] = moved;
+		cellXs[cell][t.gridSlot] = cellXs[cell][last];
+		cellYs[cell][t.gridSlot] = cellYs[cell][last];
+		moved.gridSlot = t.gridSlot;
+		cells[cell][last] = null;
+		
+		t.gridCell = -1;
+		t.gridSlot = -1;
+		size--;
+	}
+	
+	/**
+	 * @return number of free taxis in the grid
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Copies all free taxis and their positions into the arrays, which have 
+	 * to hold at least size() elements.
+	 * 
+	 * @return number of taxis copied
+	 */
+	int copyTo(Taxi[] taxis, double[] xs, double[] ys) {
+		int n = 0;
+		for (int cell = 0; cell < cells.length; cell++) {
+			for (int i = 0; i < counts[cell]; i++) {
+				taxis[n] = cells[cell][i];
+				xs[n] = cellXs[cell][i];
+				ys[n] = cellYs[cell][i];
+				n++;
+			}
+		}
+		return n;
+	}
+	
+	/**
+	 * Searches rings of cells around p, moving outwards until no closer free 
+	 * taxi can be found.
+	 * 
+	 * @param p
+	 * @param radius maximum straight line distance
+	 * @return nearest free taxi within radius of p, null if there is none
+	 */
+	Taxi findNearest(Point p, double radius) {
+		return findNearest(p, radius, null, -1);
+	}
+	
+	/**
+	 * Same as findNearest(p, radius), but if distances isn't null, the
+	 * nearest taxi is the one with the shortest route from its last node to
+	 * node. The radius still limits the straight line distance to p.
+	 * <p>
+	 * Routes aren't in the unit of the coordinates, so the search is pruned
+	 * with distances.minRouteRatio(): a taxi that is d away from p in a 
+	 * straight line is on an edge from its last node (Taxi.moveTo keeps it 
+	 * at the last node passed), so the last node is at least d - maxEdge 
+	 * away, and its route at least minRouteRatio() * (d - maxEdge).
+	 * 
+	 * @param p
+	 * @param radius maximum straight line distance
+	 * @param distances null to use straight line distances
+	 * @param node n# of the node at p, only used with distances
+	 * @return nearest free taxi within radius of p, null if there is none
+	 */
+	Taxi findNearest(Point p, double radius, DistanceOracle distances, int node) {
+		if (size == 0) { return null; }
+		
+		int column = column(p.x);
+		int row = row(p.y);
+		int maxRing = Math.max(Math.max(column, columns - 1 - column), Math.max(row, rows - 1 - row));
+		double ratio = distances != null ? distances.minRouteRatio() : 1;
+		double slack = distances != null ? maxEdge : 0;
+		
+		Taxi best = null;
+		// in straight line units without distances, route units with them
+		double bestDistance = distances != null ? Double.POSITIVE_INFINITY : radius;
+		for (int ring = 0; ring <= maxRing; ring++) {
+			// taxis in this ring are at least (ring - 1) cells away
+			double nearest = (ring - 1) * cellSize;
+			if (nearest > radius || ratio * (nearest - slack) > bestDistance) { break; }
+			
+			for (int r = row - ring; r <= row + ring; r++) {
+				if (r < 0 || r >= rows) { continue; }
+				boolean edgeRow = r == row - ring || r == row + ring;
+				int step = edgeRow ? 1 : 2 * ring;
+				for (int c = column - ring; c <= column + ring; c += Math.max(step, 1)) {
+					if (c < 0 || c >= columns) { continue; }
+					int cell = r * columns + c;
+					for (int i = 0; i < counts[cell]; i++) {
+						double dx = cellXs[cell][i] - p.x;
+						double dy = cellYs[cell][i] - p.y;
+						double distance = Math.sqrt(dx * dx + dy * dy);
+						if (distance > radius) { continue; }
+						if (distances != null) {
+							distance = distances.distance(cells[cell][i].lastNode, node);
+							if (distance == Double.POSITIVE_INFINITY) { continue; }
+						}
+						if (distance <= bestDistance) {
+							bestDistance = distance;
+							best = cells[cell][i];
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+}
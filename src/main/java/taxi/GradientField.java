@@ -1,25 +1,48 @@
 package taxi;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
 
 import org.apache.commons.math3.random.RandomGenerator;
 
 import com.github.rinde.rinsim.core.model.road.RoadModel;
-import com.github.rinde.rinsim.core.model.road.RoadModels;
 import com.github.rinde.rinsim.core.model.road.RoadUser;
 import com.github.rinde.rinsim.geom.Point;
 
 public class GradientField {
 
+	/**
+	 * How the field strength at a sampled node is obtained.
+	 */
+	public enum Mode {
+		/**
+		 * Sums the contributions of all waiting customers and active taxis 
+		 * every time a point is sampled.
+		 */
+		EXACT,
+		/**
+		 * Keeps a per-node table of the customers' field strength that is 
+		 * updated with deltas whenever a customer appears or is picked up, 
+		 * an O(nodes) pass that only happens twice per customer. The
+		 * repulsion of the taxis, whose positions change every tick, is 
+		 * summed when a point is sampled, like in EXACT mode, so it only 
+		 * saves the customers' part of the sum. Pays off when customers 
+		 * outnumber active taxis and taxis sample many times during a 
+		 * customer's wait, see FieldBenchmark for the break-even point.
+		 */
+		INCREMENTAL,
+		/**
+		 * Evaluates the sum over a quadtree of customers and active taxis, 
+		 * treating distant clusters as a single source (see FieldQuadtree).
+		 * Meant for populations of thousands of waiting customers.
+		 */
+		APPROXIMATE
+	}
+	
+	/**
+	 * Opening angle used by APPROXIMATE mode if none is given.
+	 */
+	public static final double DEFAULT_OPENING_ANGLE = 0.5;
+	
 	final RandomGenerator rng;
 	final private RoadModel roadModel;
 	
@@ -34,91 +57,186 @@ public class GradientField {
 	final double taxiVSCustomer;
 	
 	/**
-	 * Current list of customer positions. It is updated with 
-	 * calculateCustomerPositions method (this method must be called after every
-	 * customer pickup and drop off)
+	 * How field strengths are calculated
 	 */
-	ArrayList<Point> customerPositions;
+	final Mode mode;
+	
+	/**
+	 * Customers waiting for a taxi, kept up to date from PDPModel events.
+	 */
+	private final WaitingCustomerRegistry customers;
 	
 	/**
 	 * Map. Is used since information about adjacent nodes on the map is needed.
+	 * Node ids are the n# from the file, graph.position(n#) gives the position
+	 * of a node and graph.nodeId(position) its n#.
 	 */
-	public final HashMap<String, ArrayList<Point>> graph = new HashMap<>();
+	public final RoadGraph graph;
 	
 	/**
-	 * List of all nodes loaded from the file (their n# and position)
+	 * Nearest taxi base and gas station of every node of graph.
 	 */
-	public final HashMap<Integer, Point> nodes = new HashMap<>();
+	public final FacilityLocator facilities;
 	
 	/**
-	 * Reverse of nodes. Position is key and n# is value
+	 * INCREMENTAL mode only: sum of 1/distance^signalDrop from every waiting
+	 * customer to each node, indexed by n#. Customers standing exactly on a 
+	 * node are counted in coincidentCustomers instead, since their 
+	 * contribution is infinite.
 	 */
-	public final HashMap<Point, Integer> reverseNodes = new HashMap<>();
+	private final double[] customerStrength;
+	private final int[] coincidentCustomers;
 	
 	/**
-	 * List of customers currently being transported. Is used to ignore
-	 * customers that are being transported when calculating the gradient. Has
-	 * to be updated on every customer pickup and drop off.
-	 * 
-	 * TODO This can probably be replaced with ParcelState
+	 * EXACT and INCREMENTAL mode: positions of active taxis during the 
+	 * current tick.
+	 */
+	private final FleetSnapshot fleet;
+	
+	/**
+	 * APPROXIMATE mode only: customers and active taxis, rebuilt lazily when
+	 * the customers or the fleet snapshot have changed.
 	 */
-	public HashMap<Customer, Boolean> customersInTransport;
+	private final FieldQuadtree quadtree;
+	private long quadtreeCustomerVersion = -1;
+	private long quadtreeFleetVersion = -1;
 	
-	public GradientField(RoadModel roadModel, RandomGenerator rng, double signalDrop, double taxiVSCustomer) {
+	/**
+	 * EXACT and INCREMENTAL mode: route lengths between nodes, null to use
+	 * straight line distances.
+	 */
+	private DistanceOracle distances;
+	
+	/**
+	 * Network distances only: the edge a source that isn't on a node lies
+	 * on, as found by locateOnEdge. The source is edgeFromLength along the
+	 * edge from node edgeFrom, and edgeBackLength along the edge back from
+	 * node edgeBack if the road is two way (edgeBack is -1 otherwise).
+	 */
+	private int edgeFrom = -1;
+	private double edgeFromLength;
+	private int edgeBack = -1;
+	private double edgeBackLength;
+	
+	public GradientField(RoadModel roadModel, RoadGraph graph, RandomGenerator rng, double signalDrop, 
+			double taxiVSCustomer) {
+		this(roadModel, graph, rng, signalDrop, taxiVSCustomer, Mode.EXACT);
+	}
+	
+	public GradientField(RoadModel roadModel, RoadGraph graph, RandomGenerator rng, double signalDrop, 
+			double taxiVSCustomer, Mode mode) {
+		this(roadModel, graph, rng, signalDrop, taxiVSCustomer, mode, DEFAULT_OPENING_ANGLE);
+	}
+	
+	/**
+	 * @param openingAngle APPROXIMATE mode only: a cell of the quadtree is 
+	 * evaluated as a whole when its width is less than openingAngle times its
+	 * distance from the sampled point. Smaller is more accurate, 0 is exact.
+	 */
+	public GradientField(RoadModel roadModel, RoadGraph graph, RandomGenerator rng, double signalDrop, 
+			double taxiVSCustomer, Mode mode, double openingAngle) {
 		this.roadModel = roadModel;
+		this.graph = graph;
 		this.rng = rng;
 		this.signalDrop = signalDrop;
 		this.taxiVSCustomer = taxiVSCustomer;
-		customerPositions = new ArrayList<>();
-		customersInTransport = new HashMap<>();
+		this.mode = mode;
+		customers = new WaitingCustomerRegistry(this);
+		facilities = new FacilityLocator(graph);
+		fleet = new FleetSnapshot(roadModel, facilities);
+		quadtree = new FieldQuadtree(signalDrop, taxiVSCustomer, openingAngle);
+		
+		// the tables are only needed in INCREMENTAL mode
+		int tableSize = mode == Mode.INCREMENTAL ? graph.nodeCount() : 0;
+		customerStrength = new double[tableSize];
+		coincidentCustomers = new int[tableSize];
 	}
 	
 	/**
-	 * Checks vehicle's local environment and returns the place with the 
-	 * strongest gradient field.
+	 * Makes the field decay with the length of the route from the sampled 
+	 * node to customers and taxis, instead of the straight line distance. 
+	 * Taxis are taken at the last node they visited. Has no effect in 
+	 * APPROXIMATE mode, and has to be called before any customer or taxi is
+	 * added to the field.
 	 * 
-	 * @param vehicle
-	 * @return Point with the strongest gradient and its strength
+	 * @param distances distance table of graph
+	 */
+	public void useNetworkDistances(DistanceOracle distances) {
+		if (customers.size() > 0) {
+			throw new IllegalStateException("The field already has sources");
+		}
+		this.distances = distances;
+	}
+	
+	/**
+	 * @return Registry that has to listen to the PDPModel before any 
+	 * customer is registered
 	 */
-	public GradientFieldPoint getApproximateDirection(TaxiGradient vehicle) {
-		ArrayList<Point> samples = samplePoints(vehicle);
-		return getStrongestPoint(samples, vehicle);
+	public WaitingCustomerRegistry getCustomerRegistry() {
+		return customers;
 	}
 	
 	/**
-	 * Returns adjacent nodes in the graph from the last node that has been 
-	 * visited (see lastNode's javadoc for for why lastNode and not 
-	 * current location is being used)
+	 * @return Tick listener that has to be added to the simulator before any
+	 * taxi is registered
+	 */
+	public FleetSnapshot getFleetSnapshot() {
+		return fleet;
+	}
+	
+	/**
+	 * Checks vehicle's local environment and returns the place with the 
+	 * strongest gradient field.
 	 * 
 	 * @param vehicle
-	 * @return
+	 * @param result is overwritten with the result
+	 * @return result, holding the point with the strongest gradient and its
+	 * strength
 	 */
-	private ArrayList<Point> samplePoints(TaxiGradient vehicle) {
-		ArrayList<Point> result = new ArrayList<>(graph.get(vehicle.lastNode.toString()));
-		return result;
+	public GradientFieldPoint getApproximateDirection(TaxiGradient vehicle, GradientFieldPoint result) {
+		return getStrongestPoint(vehicle.lastNode, vehicle, result);
 	}
 	
 	/**
-	 * Takes samples (adjacent nodes) and finds the one that has the strongest
-	 * gradient field.
+	 * Takes samples (nodes adjacent to the last node that has been visited, 
+	 * see lastNode's javadoc for why lastNode and not current location is 
+	 * being used) and finds the one that has the strongest gradient field.
 	 * 
-	 * @param samples
+	 * @param node n# of the node the samples are taken around
 	 * @param vehicle
+	 * @param result
 	 * @return
 	 */
-	private GradientFieldPoint getStrongestPoint(ArrayList<Point> samples, RoadUser vehicle) {
+	private GradientFieldPoint getStrongestPoint(int node, TaxiGradient vehicle, GradientFieldPoint result) {
+		int first = graph.firstEdge(node);
+		int end = graph.endEdge(node);
+		if (first == end) {
+			// dead end, nothing to follow
+			return result.set(graph.position(node), 0);
+		}
+		
 		double max = Double.MIN_VALUE;
-		Point maxPoint = samples.get(0);
+		int maxNode = graph.target(first);
 		
-		for (Point p: samples) {
-			double strenght = calculateFieldStrengthAtPoint(p, vehicle);
+		for (int e = first; e < end; e++) {
+			int sample = graph.target(e);
+			double strenght;
+			if (mode == Mode.INCREMENTAL) {
+				strenght = lookUpFieldStrengthAtNode(sample, vehicle);
+			} else if (mode == Mode.APPROXIMATE) {
+				strenght = approximateFieldStrengthAtPoint(graph.x(sample), graph.y(sample), vehicle);
+			} else if (distances != null) {
+				strenght = calculateFieldStrengthAtNode(sample, vehicle);
+			} else {
+				strenght = calculateFieldStrengthAtPoint(graph.x(sample), graph.y(sample), vehicle);
+			}
 			if (strenght > max) {
 				max = strenght;
-				maxPoint = p;
+				maxNode = sample;
 			}
 		}
 		
-		return new GradientFieldPoint(maxPoint, max);
+		return result.set(graph.position(maxNode), max);
 	}
 	
 	/**
@@ -126,24 +244,29 @@ public class GradientField {
 	 * This is done by taking distances from all pending customers, doing a 
 	 * 1 / distance^signalDrop and summing it up. Additionally, the same thing
 	 * is done with other active taxi distances, but this is subtracted from the
-	 * sum.
+	 * sum. Taxi positions are read from this tick's fleet snapshot.
 	 * 
-	 * @param p
+	 * @param px
+	 * @param py
 	 * @param vehicle
 	 * @return
 	 */
-	private double calculateFieldStrengthAtPoint(Point p, RoadUser vehicle) {
+	private double calculateFieldStrengthAtPoint(double px, double py, RoadUser vehicle) {
 		double sum = 0;
 		
-		for (Point cp: customerPositions) {
-			double dist = Point.distance(cp, p);
+		for (int i = 0; i < customers.size(); i++) {
+			double dx = customers.x(i) - px;
+			double dy = customers.y(i) - py;
+			double dist = Math.sqrt(dx * dx + dy * dy);
 			sum += 1 / Math.pow(dist, signalDrop);
 		}
 		
-		ArrayList<Point> taxiPositions = calculateTaxiPositions(vehicle);
-		
-		for (Point tp: taxiPositions) {
-			double dist = Point.distance(tp, p);
+		for (int i = 0; i < fleet.size(); i++) {
+			// don't add the taxi for which the field is being calculated
+			if (fleet.taxi(i) == vehicle) { continue; }
+			double dx = fleet.x(i) - px;
+			double dy = fleet.y(i) - py;
+			double dist = Math.sqrt(dx * dx + dy * dy);
 			sum -= (1 / Math.pow(dist, signalDrop)) * taxiVSCustomer;
 		}
 		
@@ -151,123 +274,227 @@ public class GradientField {
 	}
 	
 	/**
-	 * Updates current locations of all customers that are waiting for service.
+	 * Same as calculateFieldStrengthAtPoint, with route lengths to the 
+	 * customers and to the last node of every taxi. Customers off the nodes
+	 * count from their place on their edge, like in applySource.
+	 * 
+	 * @param node n# of the sampled node
+	 * @param vehicle
+	 * @return
 	 */
-	public void updateCustomerPositions() {
-		customerPositions = new ArrayList<>();
-		ArrayList<Customer> allCustomers = 
-				new ArrayList<>(roadModel.getObjectsOfType(Customer.class));
+	private double calculateFieldStrengthAtNode(int node, TaxiGradient vehicle) {
+		double sum = 0;
 		
-		for (Customer c: allCustomers) {
-			//get all the customers that aren't already in transport
-			if (!customersInTransport.containsKey(c)) {
-				customerPositions.add(roadModel.getPosition(c));
+		for (int i = 0; i < customers.size(); i++) {
+			int customerNode = graph.nodeId(customers.x(i), customers.y(i));
+			if (customerNode >= 0) {
+				sum += decayDistance(distances.distance(node, customerNode));
+			} else if (locateOnEdge(customers.x(i), customers.y(i))) {
+				sum += decayDistance(routeToEdgeSource(node));
 			}
 		}
+		
+		for (int i = 0; i < fleet.size(); i++) {
+			if (fleet.taxi(i) == vehicle) { continue; }
+			sum -= decayDistance(distances.distance(node, fleet.taxi(i).lastNode)) * taxiVSCustomer;
+		}
+		
+		return sum;
 	}
 	
 	/**
-	 * Calculates current locations of all active taxis.
-	 * (Active meaning not at a TaxiBase or currently driving a customer
+	 * Approximates the same sum as calculateFieldStrengthAtPoint with the 
+	 * quadtree, after rebuilding it if anything changed since the last call.
 	 * 
+	 * @param px
+	 * @param py
 	 * @param vehicle
-	 * @return List of all active taxis
+	 * @return
 	 */
-	private ArrayList<Point> calculateTaxiPositions(RoadUser vehicle) {
-		ArrayList<Point> taxiPositions = new ArrayList<>();
-		ArrayList<TaxiGradient> allTaxis = 
-				new ArrayList<>(roadModel.getObjectsOfType(TaxiGradient.class));
-		
-		for (TaxiGradient t: allTaxis) {
-			// don't add the taxi for which the field is being calculated
-			if (t.equals((TaxiGradient)vehicle)) { continue; }
-			//find closest TaxiBase
-			Point position = roadModel.getPosition(t);
-			Point taxiBasePosition = roadModel.getPosition(RoadModels.findClosestObject(position, roadModel, TaxiBase.class));
-			boolean atTheBase = position.equals(taxiBasePosition);
-			
-			//if taxi isn't transporting somebody and if it's not at the base
-			if (!t.isDrivingACustomer() && !atTheBase) {
-				taxiPositions.add(roadModel.getPosition(t));
+	private double approximateFieldStrengthAtPoint(double px, double py, TaxiGradient vehicle) {
+		if (quadtreeCustomerVersion != customers.version() || quadtreeFleetVersion != fleet.version()) {
+			quadtree.clear();
+			for (int i = 0; i < customers.size(); i++) {
+				quadtree.addCustomer(customers.x(i), customers.y(i));
+			}
+			// taxis are added in snapshot order, so indices match
+			for (int i = 0; i < fleet.size(); i++) {
+				quadtree.addTaxi(fleet.x(i), fleet.y(i));
 			}
+			quadtree.build();
+			quadtreeCustomerVersion = customers.version();
+			quadtreeFleetVersion = fleet.version();
+		}
+		return quadtree.strengthAt(px, py, fleet.indexOf(vehicle));
+	}
+	
+	/**
+	 * Reads the customers' field strength at a node from the incremental 
+	 * table and subtracts the repulsion of the other taxis, which is summed
+	 * the same way as in calculateFieldStrengthAtPoint (or AtNode with 
+	 * network distances).
+	 * 
+	 * @param node n# of the sampled node
+	 * @param vehicle
+	 * @return
+	 */
+	private double lookUpFieldStrengthAtNode(int node, TaxiGradient vehicle) {
+		if (coincidentCustomers[node] > 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double sum = customerStrength[node];
+		if (taxiVSCustomer == 0) {
+			return sum;
 		}
 		
-		return taxiPositions;
+		for (int i = 0; i < fleet.size(); i++) {
+			if (fleet.taxi(i) == vehicle) { continue; }
+			if (distances != null) {
+				sum -= decayDistance(distances.distance(node, fleet.taxi(i).lastNode)) * taxiVSCustomer;
+			} else {
+				double dx = fleet.x(i) - graph.x(node);
+				double dy = fleet.y(i) - graph.y(node);
+				double dist = Math.sqrt(dx * dx + dy * dy);
+				sum -= (1 / Math.pow(dist, signalDrop)) * taxiVSCustomer;
+			}
+		}
+		return sum;
+	}
+	
+	/**
+	 * 1 / distance^signalDrop for a distance given by its x and y components
+	 * (distance must not be 0). Works on the squared distance, so the common 
+	 * signalDrop of 2 needs neither a square root nor Math.pow.
+	 */
+	private double decay(double dx, double dy) {
+		double squared = dx * dx + dy * dy;
+		if (signalDrop == 2) {
+			return 1 / squared;
+		}
+		return 1 / Math.pow(squared, signalDrop / 2);
+	}
+	
+	/**
+	 * 1 / distance^signalDrop for a route length, 0 for unreachable nodes.
+	 */
+	private double decayDistance(double distance) {
+		if (signalDrop == 2) {
+			return 1 / (distance * distance);
+		}
+		return 1 / Math.pow(distance, signalDrop);
+	}
+	
+	/**
+	 * Finds the edge a point that isn't a node lies on and stores it in
+	 * edgeFrom and edgeBack. Goes over all edges, but sources are only off
+	 * the nodes in maps where customers can wait halfway a road.
+	 * 
+	 * @return false if (x, y) isn't on any edge
+	 */
+	private boolean locateOnEdge(double x, double y) {
+		for (int a = 0; a < graph.nodeCount(); a++) {
+			for (int e = graph.firstEdge(a); e < graph.endEdge(a); e++) {
+				int b = graph.target(e);
+				double ex = graph.x(b) - graph.x(a);
+				double ey = graph.y(b) - graph.y(a);
+				double px = x - graph.x(a);
+				double py = y - graph.y(a);
+				double squared = ex * ex + ey * ey;
+				double along = (px * ex + py * ey) / squared;
+				double cross = px * ey - py * ex;
+				if (along <= 0 || along >= 1 || Math.abs(cross) > 1e-9 * squared) { continue; }
+				
+				edgeFrom = a;
+				edgeFromLength = along * graph.length(e);
+				edgeBack = -1;
+				for (int back = graph.firstEdge(b); back < graph.endEdge(b); back++) {
+					if (graph.target(back) == a) {
+						edgeBack = b;
+						edgeBackLength = (1 - along) * graph.length(back);
+					}
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return length of the shortest route from node to the source found by
+	 * the last call to locateOnEdge
+	 */
+	private double routeToEdgeSource(int node) {
+		double route = distances.distance(node, edgeFrom) + edgeFromLength;
+		if (edgeBack >= 0) {
+			route = Math.min(route, distances.distance(node, edgeBack) + edgeBackLength);
+		}
+		return route;
 	}
 	
 	/**
-	 * Loads a .dot file to a graph using some extremely unsophisticated regex.
+	 * Adds (sign 1) or removes (sign -1) the contribution of a source at 
+	 * (x, y) to every node in one of the incremental tables. With network
+	 * distances a source off the nodes counts from its place on its edge,
+	 * and a source that isn't on the map doesn't count.
+	 */
+	private void applySource(double x, double y, int sign, double[] strength, int[] coincident) {
+		if (distances != null) {
+			int source = graph.nodeId(x, y);
+			if (source >= 0) {
+				// one row of the table holds the routes from every node to source
+				for (int i = 0; i < strength.length; i++) {
+					if (i == source) {
+						coincident[i] += sign;
+					} else {
+						strength[i] += sign * decayDistance(distances.distance(i, source));
+					}
+				}
+			} else if (locateOnEdge(x, y)) {
+				for (int i = 0; i < strength.length; i++) {
+					strength[i] += sign * decayDistance(routeToEdgeSource(i));
+				}
+			}
+			return;
+		}
+		for (int i = 0; i < strength.length; i++) {
+			double dx = x - graph.x(i);
+			double dy = y - graph.y(i);
+			if (dx == 0 && dy == 0) {
+				coincident[i] += sign;
+			} else {
+				strength[i] += sign * decay(dx, dy);
+			}
+		}
+	}
+	
+	/**
+	 * Called by the registry when a new customer starts waiting.
 	 * 
-	 * TODO fix regex so that there is no need to convert " to ' and use a 
-	 * separate file
-	 * TODO automatically determine the lastNode
+	 * @param c
+	 */
+	void customerWaiting(Customer c) {
+		if (mode == Mode.INCREMENTAL) {
+			Point p = c.getPickupLocation();
+			applySource(p.x, p.y, 1, customerStrength, coincidentCustomers);
+		}
+	}
+	
+	/**
+	 * Called by the registry when a taxi starts picking up a customer.
 	 * 
-	 * @param MAP_FILE Path to the file
-	 * @param lastNode n# of the last node in the file
-	 * @throws IOException
+	 * @param c
 	 */
-	public void loadGraphNew(String MAP_FILE, int lastNode) throws IOException {
-		  Path path = Paths.get(MAP_FILE + "apos");
-		  List<String> lines = Files.readAllLines(path, Charset.forName("ISO-8859-1"));
-		  
-		  Pattern pattern1 = Pattern.compile("\\'(.*?)\\,");
-		  Pattern pattern2 = Pattern.compile("\\,(.*?)\\'");
-		  
-		  String x = "";
-		  String y = "";
-		  
-		  for (int iCount = 1; iCount < lastNode + 2; iCount++) {
-			  Matcher matcher1 = pattern1.matcher(lines.get(iCount));
-			  while (matcher1.find()) {
-				  x = matcher1.group(0);
-				  x = x.substring(1, x.length()-1);
-			  }
-			  
-			  Matcher matcher2 = pattern2.matcher(lines.get(iCount));
-			  while (matcher2.find()) {
-				  y = matcher2.group(0);
-				  y = y.substring(1, y.length()-1);
-			  }
-			  
-			  Point p = new Point(Double.parseDouble(x), Double.parseDouble(y));
-			  nodes.put(iCount-1, p);
-			  reverseNodes.put(p, iCount-1);
-			  
-		  }
-		  
-		  Pattern pattern3 = Pattern.compile("n(\\d*?)\\s");
-		  Pattern pattern4 = Pattern.compile("\\sn(\\d*?)\\[");
-		  
-		  String z = "";
-		  String a = "";
-		  
-		  for (int iCount = lastNode + 2; iCount < lines.size(); iCount++) {
-			  
-			  Matcher matcher3 = pattern3.matcher(lines.get(iCount));
-			  while (matcher3.find()) {
-				  z = matcher3.group(0);
-				  z = z.substring(1, z.length()-1);
-			  }
-			  
-			  Matcher matcher4 = pattern4.matcher(lines.get(iCount));
-			  while (matcher4.find()) {
-				  a = matcher4.group(0);
-				  a = a.substring(2, a.length()-1);
-			  }
-			  
-			  Point key = nodes.get(Integer.parseInt(z));
-			  String keyStr = key.toString();
-			  Point value = nodes.get(Integer.parseInt(a));
-			  
-			  if (graph.containsKey(keyStr)) {
-				  ArrayList<Point> temp = graph.get(keyStr);
-				  temp.add(value);
-				  graph.put(keyStr, temp);
-			  } else {
-				  ArrayList<Point> temp = new ArrayList<Point>();
-				  temp.add(value);
-				  graph.put(keyStr, temp);
-			  }
-		  }
-	  }
-}
\ No newline at end of file
+	void customerPickedUp(Customer c) {
+		if (mode == Mode.INCREMENTAL) {
+			if (customers.size() == 0) {
+				// start from a clean slate, so that rounding errors can't
+				// keep taxis away from their base
+				Arrays.fill(customerStrength, 0);
+				Arrays.fill(coincidentCustomers, 0);
+			} else {
+				Point p = c.getPickupLocation();
+				applySource(p.x, p.y, -1, customerStrength, coincidentCustomers);
+			}
+		}
+	}
+}
@@ -2,12 +2,22 @@ package taxi;
 
 import com.github.rinde.rinsim.geom.Point;
 
+/**
+ * Point and field strength at that point. Mutable, so that a taxi can reuse
+ * one instance for every direction it asks the field for.
+ */
 public final class GradientFieldPoint {
-	public final Point point;
-	public final double strength;
+	public Point point;
+	public double strength;
 	
 	public GradientFieldPoint(Point point, double strength) {
 		this.point = point;
 		this.strength = strength;
 	}
-}
+	
+	GradientFieldPoint set(Point point, double strength) {
+		this.point = point;
+		this.strength = strength;
+		return this;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+package taxi;
+
+import com.github.rinde.rinsim.core.Simulator;
+import com.github.rinde.rinsim.core.model.pdp.PDPModel;
+import com.github.rinde.rinsim.core.model.time.TickListener;
+import com.github.rinde.rinsim.core.model.time.TimeLapse;
+
+/**
+ * Run of a scenario with taxis that follow the gradient field.
+ */
+final class GradientTaxiSimulation extends TaxiSimulation {
+
+	final GradientField field;
+
+	GradientTaxiSimulation(Scenario scenario, Simulator.Builder builder) {
+		super(scenario, builder);
+		// initialize the gradient field
+		field = new GradientField(roadModel, map, rng, scenario.signalDrop, scenario.taxiVSCustomer,
+				scenario.fieldMode);
+		if (scenario.networkDistances) {
+			field.useNetworkDistances(loadDistances(scenario.mapFile, map));
+		}
+		// taxi positions are snapshot before any taxi moves, they don't 
+		// while the run is quiescent
+		simulator.addTickListener(new TickListener() {
+			@Override
+			public void tick(TimeLapse time) {
+				if (!quiescence.isQuiet()) {
+					field.getFleetSnapshot().tick(time);
+				}
+			}
+
+			@Override
+			public void afterTick(TimeLapse time) {}
+		});
+		// the field follows customers through the PDPModel's events
+		field.getCustomerRegistry().listenTo(simulator.getModelProvider().getModel(PDPModel.class));
+	}
+
+	@Override
+	FacilityLocator facilities() {
+		return field.facilities;
+	}
+
+	@Override
+	void addTaxi(int taxiID) {
+		int tankSize = randomTankSize();
+		TaxiGradient taxi = new TaxiGradient(map.position(rng.nextInt(map.nodeCount())), TAXI_CAPACITY,
+				tankSize, tankSize, field, log, journal, quiescence, taxiID);
+		simulator.register(taxi);
+		log.registerTaxi(taxi);
+	}
+
+	@Override
+	Customer initialCustomer(int i) {
+		Customer cust = createCustomer(map.position(rng.nextInt(map.nodeCount())),
+				map.position(rng.nextInt(map.nodeCount())));
+		simulator.register(cust);
+		return cust;
+	}
+}
@@ -0,0 +1,56 @@
+package taxi;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Runs the gradient or radio taxi example, or every scenario of a scenario
+ * file one after the other, on the calling thread and without a GUI:
+ *
+ * <pre>java taxi.HeadlessSimulation gradient|radio [end time] [map]
+ *java taxi.HeadlessSimulation scenarios.csv</pre>
+ *
+ * The simulator only gets the road and PDP models and no class of RinSim's
+ * UI or SWT is ever loaded, which makes starting a batch job cheaper. The
+ * statistics are printed as by the examples. For many scenarios at once
+ * see ExperimentRunner.
+ */
+public final class HeadlessSimulation {
+
+	private HeadlessSimulation() {}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("usage: HeadlessSimulation gradient|radio [end time] [map]");
+			System.out.println("       HeadlessSimulation <scenarios.csv>");
+			System.exit(1);
+		}
+		long endTime = args.length >= 2 ? Long.parseLong(args[1]) : ExampleScenarios.STANDARD_SIM_TIME;
+		String graphFile = args.length >= 3 ? args[2] : ExampleScenarios.MAP_FILE;
+
+		switch (args[0]) {
+		case "gradient":
+			run(ExampleScenarios.gradient(endTime, graphFile));
+			break;
+		case "radio":
+			run(ExampleScenarios.radio(endTime, graphFile));
+			break;
+		default:
+			for (Scenario scenario: Scenario.load(Paths.get(args[0]))) {
+				run(scenario);
+			}
+		}
+	}
+
+	/**
+	 * Runs the scenario until its end time.
+	 *
+	 * @param scenario
+	 * @return the finished run
+	 */
+	public static TaxiSimulation run(Scenario scenario) {
+		TaxiSimulation simulation = TaxiSimulation.create(scenario);
+		simulation.run();
+		return simulation;
+	}
+}
@@ -0,0 +1,87 @@
+package taxi;
+
+import java.util.Arrays;
+
+/**
+ * Minimum cost assignment of n rows to m columns (n <= m), every row gets a
+ * different column. Shortest augmenting path version of the Hungarian 
+ * algorithm with potentials, O(n^2 * m).
+ */
+final class HungarianAlgorithm {
+	
+	private HungarianAlgorithm() {}
+	
+	/**
+	 * @param cost cost of row and column at row * m + column, can be longer
+	 * than n * m so callers can reuse one buffer
+	 * @param n number of rows
+	 * @param m number of columns, at least n
+	 * @return column assigned to every row
+	 */
+	static int[] solve(double[] cost, int n, int m) {
+		if (n > m) {
+			throw new IllegalArgumentException("more rows than columns: " + n + " > " + m);
+		}
+		if (cost.length < n * m) {
+			throw new IllegalArgumentException("cost has " + cost.length + " entries, needs " + n * m);
+		}
+		
+		// 1-based, row 0 and column 0 are sentinels
+		double[] u = new double[n + 1];
+		double[] v = new double[m + 1];
+		int[] rowOfColumn = new int[m + 1];
+		int[] way = new int[m + 1];
+		double[] minSlack = new double[m + 1];
+		boolean[] used = new boolean[m + 1];
+		
+		for (int row = 1; row <= n; row++) {
+			rowOfColumn[0] = row;
+			int column = 0;
+			Arrays.fill(minSlack, Double.POSITIVE_INFINITY);
+			Arrays.fill(used, false);
+			
+			do {
+				used[column] = true;
+				int currentRow = rowOfColumn[column];
+				double delta = Double.POSITIVE_INFINITY;
+				int next = 0;
+				for (int j = 1; j <= m; j++) {
+					if (used[j]) { continue; }
+					double slack = cost[(currentRow - 1) * m + j - 1] - u[currentRow] - v[j];
+					if (slack < minSlack[j]) {
+						minSlack[j] = slack;
+						way[j] = column;
+					}
+					if (minSlack[j] < delta) {
+						delta = minSlack[j];
+						next = j;
+					}
+				}
+				for (int j = 0; j <= m; j++) {
+					if (used[j]) {
+						u[rowOfColumn[j]] += delta;
+						v[j] -= delta;
+					} else {
+						minSlack[j] -= delta;
+					}
+				}
+				column = next;
+			} while (rowOfColumn[column] != 0);
+			
+			// flip the augmenting path
+			do {
+				int previous = way[column];
+				rowOfColumn[column] = rowOfColumn[previous];
+				column = previous;
+			} while (column != 0);
+		}
+		
+		int[] result = new int[n];
+		for (int j = 1; j <= m; j++) {
+			if (rowOfColumn[j] != 0) {
+				result[rowOfColumn[j] - 1] = j - 1;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,73 @@
+package taxi;
+
+/**
+ * Histogram of non-negative durations with a fixed number of buckets, from
+ * which percentiles can be read at any time. Values below 2^SUB_BITS get a
+ * bucket each; above that every power of two is split into 2^(SUB_BITS - 1)
+ * buckets, so a percentile is off by less than 2% of its value, whatever 
+ * the range of the durations. Memory and the cost of a percentile don't 
+ * depend on the number of values.
+ */
+public final class LatencyHistogram {
+	
+	private static final int SUB_BITS = 7;
+	private static final int SUB = 1 << SUB_BITS;
+	private static final int HALF = SUB / 2;
+	private static final int BUCKETS = SUB + (63 - SUB_BITS) * HALF;
+	
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	
+	/**
+	 * @param value negative values are counted as 0
+	 */
+	public void add(long value) {
+		counts[bucket(Math.max(value, 0))]++;
+		count++;
+	}
+	
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @param percentile between 0 and 100
+	 * @return a value that percentile percent of the values are less than or
+	 * equal to (up to the bucket precision), NaN if there are no values
+	 */
+	public double getPercentile(double percentile) {
+		if (count == 0) { return Double.NaN; }
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return midpoint(i);
+			}
+		}
+		return midpoint(BUCKETS - 1);
+	}
+	
+	private static int bucket(long value) {
+		if (value < SUB) {
+			return (int) value;
+		}
+		// keep the SUB_BITS highest bits of the value
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		int mantissa = (int) (value >>> shift);
+		return SUB + (shift - 1) * HALF + mantissa - HALF;
+	}
+	
+	/**
+	 * @return middle of the range of values that fall in the bucket
+	 */
+	private static double midpoint(int bucket) {
+		if (bucket < SUB) {
+			return bucket;
+		}
+		int shift = (bucket - SUB) / HALF + 1;
+		long mantissa = (bucket - SUB) % HALF + HALF;
+		long lower = mantissa << shift;
+		return lower + ((1L << shift) - 1) / 2.0;
+	}
+}
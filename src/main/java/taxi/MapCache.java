@@ -0,0 +1,107 @@
+package taxi;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Map cache shared by all simulations in the JVM. Maps are immutable 
+ * RoadGraphs, so simulations running in parallel can share them.
+ * 
+ * When several threads ask for a map that isn't loaded yet, only one of 
+ * them reads the file and the others wait for it. Entries are held through
+ * soft references, so the garbage collector can evict maps nobody uses 
+ * anymore when memory runs low; they are loaded again on the next request.
+ */
+public final class MapCache {
+	
+	private static final ConcurrentMap<String, SoftReference<FutureTask<RoadGraph>>> CACHE = 
+			new ConcurrentHashMap<>();
+	
+	private static final AtomicLong HITS = new AtomicLong();
+	private static final AtomicLong MISSES = new AtomicLong();
+	private static final AtomicLong LOAD_NANOS = new AtomicLong();
+	
+	private MapCache() {}
+	
+	/**
+	 * Returns the map in the file, loading it if it isn't cached.
+	 * 
+	 * @param file .dot or compiled map file (see BinaryMap)
+	 * @return
+	 * @throws IllegalStateException if the map can't be loaded
+	 */
+	public static RoadGraph get(final String file) {
+		while (true) {
+			SoftReference<FutureTask<RoadGraph>> ref = CACHE.get(file);
+			FutureTask<RoadGraph> task = ref == null ? null : ref.get();
+			
+			if (task == null) {
+				// not loaded yet, or evicted
+				FutureTask<RoadGraph> newTask = new FutureTask<>(new Callable<RoadGraph>() {
+					@Override
+					public RoadGraph call() throws IOException {
+						long start = System.nanoTime();
+						try {
+							return BinaryMap.load(file);
+						} finally {
+							LOAD_NANOS.addAndGet(System.nanoTime() - start);
+						}
+					}
+				});
+				SoftReference<FutureTask<RoadGraph>> newRef = new SoftReference<>(newTask);
+				boolean installed = ref == null 
+						? CACHE.putIfAbsent(file, newRef) == null 
+						: CACHE.replace(file, ref, newRef);
+				if (!installed) {
+					// another thread started loading it first, wait for that one
+					continue;
+				}
+				MISSES.incrementAndGet();
+				ref = newRef;
+				task = newTask;
+				task.run();
+			} else {
+				HITS.incrementAndGet();
+			}
+			
+			try {
+				return task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			} catch (ExecutionException e) {
+				// don't cache failures, the next call tries again
+				CACHE.remove(file, ref);
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+	
+	public static long getHits() {
+		return HITS.get();
+	}
+	
+	public static long getMisses() {
+		return MISSES.get();
+	}
+	
+	/**
+	 * @return total time spent loading maps, in nanoseconds
+	 */
+	public static long getLoadTimeNanos() {
+		return LOAD_NANOS.get();
+	}
+	
+	/**
+	 * Drops all cached maps.
+	 */
+	public static void clear() {
+		CACHE.clear();
+	}
+}
@@ -0,0 +1,69 @@
+package taxi;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of nodes on primitive arrays. Nodes are pushed again
+ * when their distance improves, stale entries are skipped by the caller.
+ */
+final class NodeHeap {
+	private int[] nodes;
+	private double[] keys;
+	private int size;
+
+	NodeHeap(int capacity) {
+		nodes = new int[Math.max(capacity, 1)];
+		keys = new double[nodes.length];
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	double peekKey() {
+		return keys[0];
+	}
+
+	void push(int node, double key) {
+		if (size == nodes.length) {
+			nodes = Arrays.copyOf(nodes, size * 2);
+			keys = Arrays.copyOf(keys, size * 2);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (keys[parent] <= key) { break; }
+			nodes[i] = nodes[parent];
+			keys[i] = keys[parent];
+			i = parent;
+		}
+		nodes[i] = node;
+		keys[i] = key;
+	}
+
+	int pop() {
+		int top = nodes[0];
+		size--;
+		int node = nodes[size];
+		double key = keys[size];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) { break; }
+			if (child + 1 < size && keys[child + 1] < keys[child]) {
+				child++;
+			}
+			if (keys[child] >= key) { break; }
+			nodes[i] = nodes[child];
+			keys[i] = keys[child];
+			i = child;
+		}
+		nodes[i] = node;
+		keys[i] = key;
+		return top;
+	}
+}
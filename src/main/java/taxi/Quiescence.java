@@ -0,0 +1,52 @@
+package taxi;
+
+import com.github.rinde.rinsim.core.model.time.TickListener;
+import com.github.rinde.rinsim.core.model.time.TimeLapse;
+
+/**
+ * Tells the agents when a simulation is quiescent: every customer has been
+ * delivered and every taxi is parked at its base (see 
+ * TaxiInterface.isParked). Nothing can change then until the next customer
+ * arrives, so the taxis skip their ticks, which doesn't change any of the 
+ * statistics.
+ * <p>
+ * Has to be added to the simulator before the taxis, so the state is known
+ * before they tick. Once quiescent, only the number of customers is looked
+ * at every tick.
+ */
+final class Quiescence implements TickListener {
+
+	/**
+	 * Never quiescent, for taxis outside of a TaxiSimulation
+	 */
+	static final Quiescence NEVER = new Quiescence(null);
+
+	private final SimpleLogger log;
+	private boolean quiet;
+	/**
+	 * Customers registered when the simulation became quiescent
+	 */
+	private int customers;
+
+	Quiescence(SimpleLogger log) {
+		this.log = log;
+	}
+
+	@Override
+	public void tick(TimeLapse time) {
+		if (quiet && log.getNumberOfCustomers() == customers) { return; }
+		customers = log.getNumberOfCustomers();
+		quiet = customers == log.getNumberOfDeliveredCustomers()
+				&& log.getNumberOfParkedTaxis() == log.getNumberOfTaxis();
+	}
+
+	@Override
+	public void afterTick(TimeLapse time) {}
+
+	/**
+	 * @return true if nothing will change in this tick
+	 */
+	boolean isQuiet() {
+		return quiet;
+	}
+}
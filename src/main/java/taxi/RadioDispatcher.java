@@ -0,0 +1,250 @@
+package taxi;
+
+import java.util.Arrays;
+
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.geom.Point;
+
+/**
+ * Central dispatcher of the radio taxis. Customers that call are buffered 
+ * until a free taxi is assigned to them, using one of two modes:
+ * <ul>
+ * <li>GREEDY_RADIUS: one customer per tick, in order of calling, gets the
+ * nearest free taxi within a radius. The radius grows by 50% on every tick 
+ * nobody is found.</li>
+ * <li>BATCH: every tick, up to batchSize waiting customers (oldest first) 
+ * and all free taxis are matched at once, minimizing the total straight line
+ * distance with the Hungarian algorithm.</li>
+ * </ul>
+ * With useNetworkDistances, both modes compare route lengths instead of
+ * straight line distances.
+ */
+public class RadioDispatcher {
+	
+	public enum Mode {
+		GREEDY_RADIUS, BATCH
+	}
+	
+	/**
+	 * BATCH mode: cost of matching a taxi with a customer it can't reach, 
+	 * the matching can't handle infinite costs.
+	 */
+	private static final double UNREACHABLE = 1e15;
+	
+	private final Mode mode;
+	private final FreeTaxiGrid freeTaxis;
+	private final double initialRadius;
+	private final int batchSize;
+	
+	private double radius;
+	
+	/**
+	 * Route lengths between nodes of map, null to use straight line distances
+	 */
+	private RoadGraph map;
+	private DistanceOracle distances;
+	
+	/**
+	 * Waiting customers in order of calling, from head (inclusive) to tail
+	 * (exclusive), with the time they called.
+	 */
+	private Parcel[] waiting = new Parcel[64];
+	private long[] calledAt = new long[64];
+	private int head;
+	private int tail;
+	
+	/**
+	 * Reused buffers for batch matching
+	 */
+	private Taxi[] taxis = new Taxi[64];
+	private double[] taxiXs = new double[64];
+	private double[] taxiYs = new double[64];
+	/**
+	 * Cost of customer i and taxi j at i * free + j
+	 */
+	private double[] cost = new double[64 * 64];
+	
+	private long assigned;
+	private long totalTimeToAssignment;
+	private long maxTimeToAssignment;
+	private int maxWaiting;
+	
+	/**
+	 * @param mode
+	 * @param freeTaxis
+	 * @param initialRadius GREEDY_RADIUS mode: radius of the first call
+	 * @param batchSize BATCH mode: maximum number of customers matched per 
+	 * tick, bounds the cubic cost of the matching
+	 */
+	RadioDispatcher(Mode mode, FreeTaxiGrid freeTaxis, double initialRadius, int batchSize) {
+		this.mode = mode;
+		this.freeTaxis = freeTaxis;
+		this.initialRadius = initialRadius;
+		this.batchSize = batchSize;
+		this.radius = initialRadius;
+	}
+	
+	/**
+	 * Makes the dispatcher compare taxis by the length of the route from 
+	 * their last node to the customer.
+	 * 
+	 * @param map
+	 * @param distances distance table of map
+	 */
+	public void useNetworkDistances(RoadGraph map, DistanceOracle distances) {
+		this.map = map;
+		this.distances = distances;
+	}
+	
+	/**
+	 * Buffers a customer until a taxi is assigned to it.
+	 * 
+	 * @param customer
+	 * @param time
+	 */
+	public void customerCalled(Parcel customer, long time) {
+		if (tail == waiting.length) {
+			int count = tail - head;
+			if (count * 2 > waiting.length) {
+				waiting = Arrays.copyOf(waiting, waiting.length * 2);
+				calledAt = Arrays.copyOf(calledAt, calledAt.length * 2);
+			}
+			// move the waiting customers to the front
+			System.arraycopy(waiting, head, waiting, 0, count);
+			System.arraycopy(calledAt, head, calledAt, 0, count);
+			Arrays.fill(waiting, count, tail, null);
+			head = 0;
+			tail = count;
+		}
+		waiting[tail] = customer;
+		calledAt[tail] = time;
+		tail++;
+		maxWaiting = Math.max(maxWaiting, tail - head);
+	}
+	
+	/**
+	 * @return number of customers that haven't been assigned a taxi
+	 */
+	public int getNumberOfWaitingCustomers() {
+		return tail - head;
+	}
+	
+	/**
+	 * Assigns taxis to waiting customers, has to be called every tick.
+	 * 
+	 * @param time current time
+	 */
+	public void dispatch(long time) {
+		if (head == tail) { return; }
+		
+		if (mode == Mode.BATCH) {
+			dispatchBatch(time);
+		} else {
+			dispatchGreedy(time);
+		}
+		
+		if (head == tail) {
+			head = 0;
+			tail = 0;
+		}
+	}
+	
+	private void dispatchGreedy(long time) {
+		Parcel cust = waiting[head];
+		Taxi taxi = callForTaxi(cust.getPickupLocation(), radius);
+		if (taxi != null) {
+			assign(taxi, head, time);
+			waiting[head++] = null;
+			radius = initialRadius;
+		}
+		radius += 0.5 * initialRadius;
+	}
+	
+	/**
+	 * Try to find a free taxi within a given radius. If it fails, another call
+	 * will be made, with increased radius on the next tick.
+	 * 
+	 * @param custLocation
+	 *            Customers position
+	 * @param radius
+	 * @return Nearest free taxi within the radius, null if there is none
+	 */
+	private Taxi callForTaxi(Point custLocation, double radius) {
+		if (distances != null) {
+			return freeTaxis.findNearest(custLocation, radius, distances, map.nodeId(custLocation));
+		}
+		return freeTaxis.findNearest(custLocation, radius);
+	}
+	
+	private void dispatchBatch(long time) {
+		int free = freeTaxis.size();
+		if (free == 0) { return; }
+		if (taxis.length < free) {
+			taxis = new Taxi[free * 2];
+			taxiXs = new double[free * 2];
+			taxiYs = new double[free * 2];
+		}
+		freeTaxis.copyTo(taxis, taxiXs, taxiYs);
+		
+		// the matching below needs at least as many taxis as customers
+		int customers = Math.min(Math.min(tail - head, batchSize), free);
+		if (cost.length < customers * free) {
+			cost = new double[customers * free * 2];
+		}
+		for (int i = 0; i < customers; i++) {
+			Point p = waiting[head + i].getPickupLocation();
+			if (distances != null) {
+				int node = map.nodeId(p);
+				for (int j = 0; j < free; j++) {
+					// unreachable pairs are only used if nothing else is left
+					cost[i * free + j] = Math.min(distances.distance(taxis[j].lastNode, node), UNREACHABLE);
+				}
+				continue;
+			}
+			for (int j = 0; j < free; j++) {
+				double dx = taxiXs[j] - p.x;
+				double dy = taxiYs[j] - p.y;
+				cost[i * free + j] = Math.sqrt(dx * dx + dy * dy);
+			}
+		}
+		
+		int[] taxiOfCustomer = HungarianAlgorithm.solve(cost, customers, free);
+		for (int i = 0; i < customers; i++) {
+			assign(taxis[taxiOfCustomer[i]], head + i, time);
+			waiting[head + i] = null;
+		}
+		head += customers;
+		Arrays.fill(taxis, 0, free, null);
+	}
+	
+	private void assign(Taxi taxi, int index, long time) {
+		taxi.assignCustomer(waiting[index]);
+		long delay = time - calledAt[index];
+		assigned++;
+		totalTimeToAssignment += delay;
+		maxTimeToAssignment = Math.max(maxTimeToAssignment, delay);
+	}
+	
+	/**
+	 * Prints how many customers were assigned, per hour of simulated time, 
+	 * and how long they waited for a taxi to be assigned.
+	 * 
+	 * @param time current time
+	 */
+	public void printStatistics(long time) {
+		System.out.println("dispatch mode");
+		System.out.println(mode);
+		System.out.println("customers assigned");
+		System.out.println(assigned);
+		System.out.println("customers assigned per hour");
+		System.out.println(time > 0 ? assigned * 3600000.0 / time : 0);
+		System.out.println("mean call to assignment time");
+		System.out.println(assigned > 0 ? totalTimeToAssignment / (double) assigned : 0);
+		System.out.println("max call to assignment time");
+		System.out.println(maxTimeToAssignment);
+		System.out.println("max customers waiting for assignment");
+		System.out.println(maxWaiting);
+		System.out.println("customers never assigned");
+		System.out.println(tail - head);
+	}
+}
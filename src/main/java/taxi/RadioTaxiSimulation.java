@@ -0,0 +1,78 @@
+package taxi;
+
+import java.util.ArrayList;
+
+import com.github.rinde.rinsim.core.Simulator;
+
+/**
+ * Run of a scenario with taxis that are sent to customers by a radio
+ * dispatcher.
+ */
+final class RadioTaxiSimulation extends TaxiSimulation {
+
+	final FreeTaxiGrid freeTaxis;
+	final FacilityLocator facilities;
+	final RadioDispatcher dispatcher;
+
+	/**
+	 * Used to assign initial customers to taxis - doesn't take the distance
+	 * between the taxi and the customer into account; first customer gets
+	 * the first taxi etc
+	 */
+	private final ArrayList<Taxi> initialListOfTaxies = new ArrayList<>();
+
+	RadioTaxiSimulation(Scenario scenario, Simulator.Builder builder) {
+		super(scenario, builder);
+		freeTaxis = new FreeTaxiGrid(map);
+		facilities = new FacilityLocator(map);
+		dispatcher = new RadioDispatcher(scenario.dispatchMode, freeTaxis, scenario.radius,
+				scenario.dispatchBatchSize);
+		if (scenario.networkDistances) {
+			dispatcher.useNetworkDistances(map, loadDistances(scenario.mapFile, map));
+		}
+	}
+
+	@Override
+	FacilityLocator facilities() {
+		return facilities;
+	}
+
+	@Override
+	void addTaxi(int taxiID) {
+		int tankSize = randomTankSize();
+		Taxi taxi = new Taxi(roadModel.getRandomPosition(rng), TAXI_CAPACITY, tankSize, tankSize, log, freeTaxis,
+				facilities, journal, quiescence, taxiID);
+		simulator.register(taxi);
+		initialListOfTaxies.add(taxi);
+		log.registerTaxi(taxi);
+	}
+
+	@Override
+	Customer initialCustomer(int i) {
+		Customer cust = createCustomer(roadModel.getRandomPosition(rng), roadModel.getRandomPosition(rng));
+		simulator.register(cust);
+		initialListOfTaxies.get(i).assignCustomer(cust);
+		return cust;
+	}
+
+	@Override
+	void customerCalled(Customer customer, long time) {
+		dispatcher.customerCalled(customer, time);
+		super.customerCalled(customer, time);
+	}
+
+	@Override
+	void dispatch(long time) {
+		// if there are some customers that haven't been assigned to a taxi,
+		// assign them now
+		dispatcher.dispatch(time);
+	}
+
+	@Override
+	void end(long time) {
+		super.end(time);
+		if (scenario.printStatistics) {
+			dispatcher.printStatistics(time);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package taxi;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * A customer every interval until an end time, waiting at a hotspot node or
+ * one of its neighbours and going to a random node. The nodes of an arrival
+ * are drawn when next() moves to it.
+ */
+final class RegularDemand implements DemandSource {
+
+	private final RoadGraph map;
+	private final RandomGenerator rng;
+	private final long interval;
+	private final long endTime;
+	/**
+	 * n# of the hotspot, -1 to let customers wait anywhere
+	 */
+	private final int hotspot;
+
+	private long nextTime;
+	private int origin = -1;
+	private int destination = -1;
+
+	/**
+	 * @param map
+	 * @param rng
+	 * @param interval time between two customers
+	 * @param endTime no customers arrive from this time on
+	 * @param hotspot n# of a node, -1 for none
+	 */
+	RegularDemand(RoadGraph map, RandomGenerator rng, long interval, long endTime, int hotspot) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Interval must be positive: " + interval);
+		}
+		if (hotspot >= map.nodeCount()) {
+			throw new IllegalArgumentException("Hotspot is not a node of the map: " + hotspot);
+		}
+		this.map = map;
+		this.rng = rng;
+		this.interval = interval;
+		this.endTime = endTime;
+		this.hotspot = hotspot;
+		this.nextTime = 0;
+	}
+
+	/**
+	 * The demand of the examples: customersPer100Nodes for every 100 nodes
+	 * of the map, spread over 30000 seconds of which only the part before 
+	 * endTime is used.
+	 */
+	static RegularDemand of(Scenario scenario, RoadGraph map, RandomGenerator rng) {
+		long interval = (30000000 / scenario.customersPer100Nodes) / Math.max(1, map.nodeCount() / 100);
+		return new RegularDemand(map, rng, interval, scenario.demandEndTime, scenario.hotspotNode);
+	}
+
+	@Override
+	public long nextArrivalTime() {
+		return nextTime < endTime ? nextTime : Long.MAX_VALUE;
+	}
+
+	@Override
+	public void next() {
+		origin = hotspot < 0 ? rng.nextInt(map.nodeCount()) : nearHotspot();
+		destination = rng.nextInt(map.nodeCount());
+		nextTime += interval;
+	}
+
+	/**
+	 * The hotspot or one of its first four neighbours, all equally likely.
+	 * A neighbour that doesn't exist counts as the hotspot.
+	 */
+	private int nearHotspot() {
+		int rand = rng.nextInt(5);
+		if (rand == 0 || rand > map.degree(hotspot)) {
+			return hotspot;
+		}
+		return map.target(map.firstEdge(hotspot) + rand - 1);
+	}
+
+	@Override
+	public int origin() {
+		return origin;
+	}
+
+	@Override
+	public int destination() {
+		return destination;
+	}
+
+	@Override
+	public void close() {}
+}
@@ -0,0 +1,353 @@
+package taxi;
+
+import java.util.Arrays;
+
+import com.github.rinde.rinsim.geom.Graph;
+import com.github.rinde.rinsim.geom.Graphs;
+import com.github.rinde.rinsim.geom.MultiAttributeData;
+import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.geom.TableGraph;
+
+/**
+ * Immutable road graph over integer node ids (the n# from the map file). 
+ * Outgoing connections are stored in compressed sparse row form: the 
+ * targets of node i are targets[offsets[i]] to targets[offsets[i + 1] - 1].
+ * Positions can be mapped back to node ids with an open addressing table, so
+ * no strings or boxed keys are involved. Every edge has a length and an 
+ * optional maximum speed (NaN if absent), like the d and s attributes of a
+ * .dot map.
+ */
+public final class RoadGraph {
+	
+	private final double[] xs;
+	private final double[] ys;
+	private final Point[] positions;
+	private final int[] offsets;
+	private final int[] targets;
+	private final double[] lengths;
+	private final double[] maxSpeeds;
+	
+	/**
+	 * Same graph in the form RinSim's road model needs, built on first use
+	 */
+	private Graph<MultiAttributeData> multiAttributeGraph;
+	
+	/**
+	 * Same graph with every edge turned around, built on first use
+	 */
+	private RoadGraph reversed;
+	
+	/**
+	 * Open addressing table from position to node id + 1 (0 is an empty slot)
+	 */
+	private final int[] index;
+	private final int mask;
+	
+	private RoadGraph(double[] xs, double[] ys, int[] offsets, int[] targets, double[] lengths, 
+			double[] maxSpeeds) {
+		this.xs = xs;
+		this.ys = ys;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.lengths = lengths;
+		this.maxSpeeds = maxSpeeds;
+		
+		positions = new Point[xs.length];
+		for (int i = 0; i < xs.length; i++) {
+			positions[i] = new Point(xs[i], ys[i]);
+		}
+		
+		int capacity = Integer.highestOneBit(Math.max(2, xs.length) * 2 - 1) << 1;
+		index = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < xs.length; i++) {
+			int slot = hash(xs[i], ys[i]) & mask;
+			while (index[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			index[slot] = i + 1;
+		}
+	}
+	
+	/**
+	 * Wraps arrays that are already in compressed sparse row form, without
+	 * copying them. Used by readers of preprocessed maps.
+	 */
+	static RoadGraph fromArrays(double[] xs, double[] ys, int[] offsets, int[] targets, double[] lengths, 
+			double[] maxSpeeds) {
+		return new RoadGraph(xs, ys, offsets, targets, lengths, maxSpeeds);
+	}
+	
+	private static int hash(double x, double y) {
+		// + 0.0 makes sure -0.0 and 0.0 end up in the same slot
+		long bits = Double.doubleToLongBits(x + 0.0) * 31 + Double.doubleToLongBits(y + 0.0);
+		int h = (int) (bits ^ (bits >>> 32));
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @return id of the node at exactly this position, -1 if there is none
+	 */
+	public int nodeId(double x, double y) {
+		int slot = hash(x, y) & mask;
+		while (index[slot] != 0) {
+			int id = index[slot] - 1;
+			if (xs[id] == x && ys[id] == y) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	
+	/**
+	 * @param p
+	 * @return id of the node at p, -1 if p isn't a node
+	 */
+	public int nodeId(Point p) {
+		return nodeId(p.x, p.y);
+	}
+	
+	public int nodeCount() {
+		return xs.length;
+	}
+	
+	public Point position(int node) {
+		return positions[node];
+	}
+	
+	public double x(int node) {
+		return xs[node];
+	}
+	
+	public double y(int node) {
+		return ys[node];
+	}
+	
+	/**
+	 * @param node
+	 * @return index of the first outgoing edge of node
+	 */
+	public int firstEdge(int node) {
+		return offsets[node];
+	}
+	
+	/**
+	 * @param node
+	 * @return index one past the last outgoing edge of node
+	 */
+	public int endEdge(int node) {
+		return offsets[node + 1];
+	}
+	
+	public int degree(int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+	
+	/**
+	 * @param edge
+	 * @return id of the node the edge leads to
+	 */
+	public int target(int edge) {
+		return targets[edge];
+	}
+	
+	public double length(int edge) {
+		return lengths[edge];
+	}
+	
+	/**
+	 * @param edge
+	 * @return maximum speed on the edge, NaN if it has none
+	 */
+	public double maxSpeed(int edge) {
+		return maxSpeeds[edge];
+	}
+	
+	public int edgeCount() {
+		return targets.length;
+	}
+	
+	/**
+	 * Converts this graph to the graph used by RinSim's road model. The 
+	 * conversion only happens once, later calls return the same unmodifiable
+	 * graph, so it can be shared by simulations running in parallel.
+	 * 
+	 * @return
+	 */
+	public synchronized Graph<MultiAttributeData> getMultiAttributeGraph() {
+		if (multiAttributeGraph == null) {
+			Graph<MultiAttributeData> g = new TableGraph<>();
+			for (int node = 0; node < nodeCount(); node++) {
+				for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+					MultiAttributeData.Builder data = MultiAttributeData.builder().setLength(lengths[e]);
+					if (!Double.isNaN(maxSpeeds[e])) {
+						data.setMaxSpeed(maxSpeeds[e]);
+					}
+					g.addConnection(positions[node], positions[targets[e]], data.build());
+				}
+			}
+			multiAttributeGraph = Graphs.unmodifiableGraph(g);
+		}
+		return multiAttributeGraph;
+	}
+	
+	/**
+	 * Graph with the same nodes and every edge turned around. A search over
+	 * the reversed graph from node finds the routes that end in node. Built
+	 * once, later calls return the same graph.
+	 * 
+	 * @return
+	 */
+	public synchronized RoadGraph reversed() {
+		if (reversed == null) {
+			int n = nodeCount();
+			int[] revOffsets = new int[n + 1];
+			for (int e = 0; e < targets.length; e++) {
+				revOffsets[targets[e] + 1]++;
+			}
+			for (int i = 0; i < n; i++) {
+				revOffsets[i + 1] += revOffsets[i];
+			}
+			int[] next = Arrays.copyOf(revOffsets, n);
+			int[] revTargets = new int[targets.length];
+			double[] revLengths = new double[targets.length];
+			double[] revMaxSpeeds = new double[targets.length];
+			for (int node = 0; node < n; node++) {
+				for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+					int slot = next[targets[e]]++;
+					revTargets[slot] = node;
+					revLengths[slot] = lengths[e];
+					revMaxSpeeds[slot] = maxSpeeds[e];
+				}
+			}
+			reversed = new RoadGraph(xs, ys, revOffsets, revTargets, revLengths, revMaxSpeeds);
+		}
+		return reversed;
+	}
+	
+	/**
+	 * Collects nodes and edges in any order and packs them into a RoadGraph.
+	 */
+	public static final class Builder {
+		private double[] xs = new double[64];
+		private double[] ys = new double[64];
+		private boolean[] added = new boolean[64];
+		private int nodeCount = 0;
+		
+		private int[] from = new int[128];
+		private int[] to = new int[128];
+		private double[] edgeLengths = new double[128];
+		private double[] edgeSpeeds = new double[128];
+		private int edgeCount = 0;
+		
+		/**
+		 * Adds a node. Ids have to be dense (0 to n - 1), but don't have to be
+		 * added in order.
+		 * 
+		 * @throws IllegalArgumentException if id is negative or already added
+		 */
+		public Builder addNode(int id, double x, double y) {
+			if (id < 0) {
+				throw new IllegalArgumentException("negative node id " + id);
+			}
+			if (id >= xs.length) {
+				int length = Math.max(id + 1, xs.length * 2);
+				xs = Arrays.copyOf(xs, length);
+				ys = Arrays.copyOf(ys, length);
+				added = Arrays.copyOf(added, length);
+			}
+			if (added[id]) {
+				throw new IllegalArgumentException("node " + id + " is added twice");
+			}
+			xs[id] = x;
+			ys[id] = y;
+			added[id] = true;
+			nodeCount = Math.max(nodeCount, id + 1);
+			return this;
+		}
+		
+		/**
+		 * Adds an edge with the straight line distance as length.
+		 */
+		public Builder addEdge(int source, int target) {
+			return addEdge(source, target, Double.NaN, Double.NaN);
+		}
+		
+		/**
+		 * @param length NaN to use the straight line distance
+		 * @param maxSpeed NaN if there is no maximum speed
+		 * @throws IllegalArgumentException if source or target is negative
+		 */
+		public Builder addEdge(int source, int target, double length, double maxSpeed) {
+			if (source < 0 || target < 0) {
+				throw new IllegalArgumentException("negative node id in edge " + source + " -> " + target);
+			}
+			if (edgeCount == from.length) {
+				from = Arrays.copyOf(from, edgeCount * 2);
+				to = Arrays.copyOf(to, edgeCount * 2);
+				edgeLengths = Arrays.copyOf(edgeLengths, edgeCount * 2);
+				edgeSpeeds = Arrays.copyOf(edgeSpeeds, edgeCount * 2);
+			}
+			from[edgeCount] = source;
+			to[edgeCount] = target;
+			edgeLengths[edgeCount] = length;
+			edgeSpeeds[edgeCount] = maxSpeed;
+			edgeCount++;
+			return this;
+		}
+		
+		public int nodeCount() {
+			return nodeCount;
+		}
+		
+		/**
+		 * @throws IllegalArgumentException if the node ids aren't dense or an
+		 * edge leads from or to a node that hasn't been added
+		 */
+		public RoadGraph build() {
+			for (int i = 0; i < nodeCount; i++) {
+				if (!added[i]) {
+					throw new IllegalArgumentException("node " + i + " is missing, node ids have to run from 0 to "
+							+ (nodeCount - 1));
+				}
+			}
+			for (int e = 0; e < edgeCount; e++) {
+				if (from[e] >= nodeCount || to[e] >= nodeCount) {
+					throw new IllegalArgumentException("edge " + from[e] + " -> " + to[e] 
+							+ " has an end that isn't a node");
+				}
+			}
+			
+			int[] offsets = new int[nodeCount + 1];
+			for (int e = 0; e < edgeCount; e++) {
+				offsets[from[e] + 1]++;
+			}
+			for (int i = 0; i < nodeCount; i++) {
+				offsets[i + 1] += offsets[i];
+			}
+			
+			// counting sort of the edges by source, keeps file order per node
+			int[] next = Arrays.copyOf(offsets, nodeCount);
+			int[] targets = new int[edgeCount];
+			double[] lengths = new double[edgeCount];
+			double[] maxSpeeds = new double[edgeCount];
+			for (int e = 0; e < edgeCount; e++) {
+				int slot = next[from[e]]++;
+				targets[slot] = to[e];
+				lengths[slot] = edgeLengths[e];
+				maxSpeeds[slot] = edgeSpeeds[e];
+				if (Double.isNaN(lengths[slot])) {
+					double dx = xs[to[e]] - xs[from[e]];
+					double dy = ys[to[e]] - ys[from[e]];
+					lengths[slot] = Math.sqrt(dx * dx + dy * dy);
+				}
+			}
+			
+			return new RoadGraph(Arrays.copyOf(xs, nodeCount), Arrays.copyOf(ys, nodeCount), 
+					offsets, targets, lengths, maxSpeeds);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package taxi;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+import com.github.rinde.rinsim.core.model.road.MoveProgress;
+import com.github.rinde.rinsim.core.model.road.MovingRoadUser;
+import com.github.rinde.rinsim.core.model.road.RoadModel;
+import com.github.rinde.rinsim.core.model.time.TimeLapse;
+import com.github.rinde.rinsim.geom.Point;
+
+/**
+ * Remembers the path a vehicle is following. RoadModel.moveTo plans the 
+ * shortest path again on every call, while taxis call it every tick towards
+ * the same destination. With this cache the path is planned once when the
+ * destination changes and then followed tick by tick. A destination one
+ * edge away from the node the vehicle is at needs no planning at all, which
+ * is how gradient taxis move.
+ */
+final class RouteCache {
+	
+	private final RoadGraph graph;
+	
+	private Point destination;
+	
+	/**
+	 * Rest of the path to destination, consumed by RoadModel.followPath
+	 */
+	private final ArrayDeque<Point> path;
+	
+	RouteCache(RoadGraph graph) {
+		this.graph = graph;
+		destination = null;
+		path = new ArrayDeque<>();
+	}
+	
+	/**
+	 * Same as rm.moveTo(vehicle, to, time), but only plans a new path when
+	 * the destination differs from the previous call or the previous path
+	 * has been used up.
+	 * 
+	 * @param rm
+	 * @param vehicle
+	 * @param to
+	 * @param time
+	 * @return n# of the last node the vehicle passed or reached during this 
+	 * move, -1 if there is none
+	 */
+	int moveTo(RoadModel rm, MovingRoadUser vehicle, Point to, TimeLapse time) {
+		MoveProgress progress = rm.followPath(vehicle, path(rm, vehicle, to), time);
+		List<Point> travelled = progress.travelledNodes();
+		for (int i = travelled.size() - 1; i >= 0; i--) {
+			int node = graph.nodeId(travelled.get(i));
+			if (node >= 0) { return node; }
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return rest of the path from vehicle to to, only planned when the 
+	 * destination differs from the previous call or the previous path has 
+	 * been used up
+	 */
+	Queue<Point> path(RoadModel rm, MovingRoadUser vehicle, Point to) {
+		// an exhausted path means the destination was reached earlier, the
+		// vehicle may have left it since then
+		if (!to.equals(destination) || path.isEmpty()) {
+			path.clear();
+			if (isNeighbour(rm.getPosition(vehicle), to)) {
+				path.add(to);
+			} else {
+				path.addAll(rm.getShortestPathTo(vehicle, to));
+			}
+			destination = to;
+		}
+		return path;
+	}
+	
+	/**
+	 * @return true if from and to are nodes connected by an edge from -> to
+	 */
+	private boolean isNeighbour(Point from, Point to) {
+		int fromNode = graph.nodeId(from);
+		if (fromNode < 0) { return false; }
+		int toNode = graph.nodeId(to);
+		for (int e = graph.firstEdge(fromNode); e < graph.endEdge(fromNode); e++) {
+			if (graph.target(e) == toNode) { return true; }
+		}
+		return false;
+	}
+}
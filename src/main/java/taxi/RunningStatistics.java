@@ -0,0 +1,61 @@
+package taxi;
+
+/**
+ * Mean, standard deviation, minimum and maximum of a stream of values, 
+ * updated with Welford's algorithm as every value arrives. Uses constant
+ * memory and never looks at a value twice.
+ */
+public final class RunningStatistics {
+	
+	private long count;
+	private double mean;
+	/**
+	 * Sum of squared differences from the current mean
+	 */
+	private double m2;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+	
+	public void add(double value) {
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		if (count == 1) {
+			min = value;
+			max = value;
+		} else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+	}
+	
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return mean of the values, NaN if there are none
+	 */
+	public double getMean() {
+		return count > 0 ? mean : Double.NaN;
+	}
+	
+	/**
+	 * @return sample standard deviation (n - 1 in the denominator), NaN if
+	 * there are no values and 0 for a single value
+	 */
+	public double getStandardDeviation() {
+		if (count == 0) { return Double.NaN; }
+		if (count == 1) { return 0; }
+		return Math.sqrt(m2 / (count - 1));
+	}
+	
+	public double getMin() {
+		return min;
+	}
+	
+	public double getMax() {
+		return max;
+	}
+}
@@ -0,0 +1,353 @@
+package taxi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything that defines one simulation run: algorithm, map, fleet, field
+ * or dispatch parameters, demand, end time and random seed. Immutable, so
+ * scenarios can be handed to runs on other threads.
+ * <p>
+ * Batches of scenarios are read from CSV files (see load), one scenario per
+ * line:
+ *
+ * <pre>
+ * name,algorithm,map,taxis,signalDrop,endTime,seed
+ * g10,GRADIENT,maps/test.dot,10,2,28800000,1
+ * r20,RADIO,maps/test.dot,20,,28800000,1
+ * </pre>
+ *
+ * The header names the columns, they can be given in any order and every
+ * column but algorithm is optional. Empty cells and missing columns take
+ * the defaults of the builder. Lines starting with # are ignored. The 
+ * journalEvents column lists the event types to journal separated by 
+ * spaces, such as "PICKUP DELIVERY".
+ */
+public final class Scenario {
+
+	public enum Algorithm {
+		GRADIENT, RADIO
+	}
+
+	public final String name;
+	public final Algorithm algorithm;
+	public final String mapFile;
+	public final long seed;
+	public final long endTime;
+
+	public final int taxis;
+	public final int depots;
+	public final int gasStations;
+	/**
+	 * Customers waiting when the simulation starts
+	 */
+	public final int initialCustomers;
+
+	/**
+	 * New customers per 100 nodes, spread evenly over the time before
+	 * demandEndTime
+	 */
+	public final int customersPer100Nodes;
+	public final long demandEndTime;
+	/**
+	 * Customers appear around this node (its n#), anywhere if it is -1
+	 */
+	public final int hotspotNode;
+	/**
+	 * Arrivals of the customers (see ArrivalTrace), replaces the regular
+	 * demand above if it isn't null
+	 */
+	public final String traceFile;
+	/**
+	 * Arrival rates per node and time bucket (see SpatioTemporalDemand),
+	 * replaces the regular demand if it isn't null, until demandEndTime
+	 */
+	public final String demandModelFile;
+
+	/**
+	 * GRADIENT only, see GradientField
+	 */
+	public final double signalDrop;
+	public final double taxiVSCustomer;
+	public final GradientField.Mode fieldMode;
+
+	/**
+	 * RADIO only, see RadioDispatcher
+	 */
+	public final RadioDispatcher.Mode dispatchMode;
+	public final double radius;
+	public final int dispatchBatchSize;
+
+	/**
+	 * Use route lengths from the map's distance table instead of straight
+	 * line distances
+	 */
+	public final boolean networkDistances;
+
+	/**
+	 * Skip the ticks of the taxis while nothing can happen until the next
+	 * customer arrives, and end the run when no customer will arrive 
+	 * anymore. Doesn't change any of the statistics.
+	 */
+	public final boolean skipIdleTime;
+
+	/**
+	 * Output files, null for none
+	 */
+	public final String journalFile;
+	public final String spillFile;
+	public final String metricsFile;
+	/**
+	 * Event types the journal records
+	 */
+	public final Set<EventJournal.Type> journalEvents;
+
+	/**
+	 * Print all statistics when the run ends
+	 */
+	public final boolean printStatistics;
+
+	private Scenario(Builder b) {
+		name = b.name;
+		algorithm = b.algorithm;
+		mapFile = b.mapFile;
+		seed = b.seed;
+		endTime = b.endTime;
+		taxis = b.taxis;
+		depots = b.depots;
+		gasStations = b.gasStations;
+		initialCustomers = b.initialCustomers;
+		customersPer100Nodes = b.customersPer100Nodes;
+		demandEndTime = b.demandEndTime;
+		hotspotNode = b.hotspotNode;
+		traceFile = b.traceFile;
+		demandModelFile = b.demandModelFile;
+		signalDrop = b.signalDrop;
+		taxiVSCustomer = b.taxiVSCustomer;
+		fieldMode = b.fieldMode;
+		dispatchMode = b.dispatchMode;
+		radius = b.radius;
+		dispatchBatchSize = b.dispatchBatchSize;
+		networkDistances = b.networkDistances;
+		skipIdleTime = b.skipIdleTime;
+		journalFile = b.journalFile;
+		spillFile = b.spillFile;
+		metricsFile = b.metricsFile;
+		journalEvents = Collections.unmodifiableSet(EnumSet.copyOf(b.journalEvents));
+		printStatistics = b.printStatistics;
+	}
+
+	public static Builder builder(Algorithm algorithm) {
+		return new Builder(algorithm);
+	}
+
+	/**
+	 * Reads a batch of scenarios.
+	 *
+	 * @param file CSV file, see the class comment
+	 * @return scenarios in the order of the file
+	 * @throws IOException
+	 * @throws IllegalArgumentException if a column or value isn't valid, 
+	 * two scenarios have the same name or two outputs (journal, spill or 
+	 * metrics, of the same or different scenarios) are the same file
+	 */
+	public static List<Scenario> load(Path file) throws IOException {
+		List<Scenario> scenarios = new ArrayList<>();
+		Set<String> names = new HashSet<>();
+		// output file to the scenario writing it
+		Map<Path, String> outputs = new HashMap<>();
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String[] header = null;
+			int lineNumber = 0;
+			String line;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) { continue; }
+				String[] cells = line.split(",", -1);
+				if (header == null) {
+					header = cells;
+					continue;
+				}
+				Scenario scenario = parse(header, cells, file.getFileName() + ":" + lineNumber);
+				if (!names.add(scenario.name)) {
+					throw new IllegalArgumentException("Duplicate scenario name: " + scenario.name);
+				}
+				for (String output: new String[] {scenario.journalFile, scenario.spillFile, scenario.metricsFile}) {
+					if (output == null) { continue; }
+					String other = outputs.put(Paths.get(output).toAbsolutePath().normalize(), scenario.name);
+					if (other != null) {
+						throw new IllegalArgumentException("Output file " + output + " is written by both " + other 
+								+ " and " + scenario.name);
+					}
+				}
+				scenarios.add(scenario);
+			}
+		}
+		return scenarios;
+	}
+
+	private static Scenario parse(String[] header, String[] cells, String where) {
+		String algorithm = null;
+		for (int i = 0; i < header.length && i < cells.length; i++) {
+			if (header[i].trim().equals("algorithm")) {
+				algorithm = cells[i].trim();
+			}
+		}
+		if (algorithm == null || algorithm.isEmpty()) {
+			throw new IllegalArgumentException(where + ": no algorithm");
+		}
+		Builder b = builder(Algorithm.valueOf(algorithm)).name(where);
+		for (int i = 0; i < header.length && i < cells.length; i++) {
+			String key = header[i].trim();
+			String value = cells[i].trim();
+			if (value.isEmpty()) { continue; }
+			try {
+				b.set(key, value);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(where + ": bad value for " + key + ": " + value, e);
+			}
+		}
+		return b.build();
+	}
+
+	public static final class Builder {
+		private String name;
+		private final Algorithm algorithm;
+		private String mapFile = "maps/test.dot";
+		private long seed = 123;
+		private long endTime = 8 * 60 * 60 * 1000;
+		private int taxis = 10;
+		private int depots = 1;
+		private int gasStations = 1;
+		private int initialCustomers = 0;
+		private int customersPer100Nodes = 50 * 4;
+		private long demandEndTime = 2 * 60 * 60 * 1000;
+		private int hotspotNode = 88;
+		private String traceFile = null;
+		private String demandModelFile = null;
+		private double signalDrop = 2;
+		private double taxiVSCustomer = 0;
+		private GradientField.Mode fieldMode = GradientField.Mode.EXACT;
+		private RadioDispatcher.Mode dispatchMode = RadioDispatcher.Mode.GREEDY_RADIUS;
+		private double radius = 20000;
+		private int dispatchBatchSize = 100;
+		private boolean networkDistances = false;
+		private boolean skipIdleTime = true;
+		private String journalFile = null;
+		private String spillFile = null;
+		private String metricsFile = null;
+		private EnumSet<EventJournal.Type> journalEvents = EnumSet.allOf(EventJournal.Type.class);
+		private boolean printStatistics = false;
+
+		private Builder(Algorithm algorithm) {
+			this.algorithm = algorithm;
+			this.name = algorithm.name().toLowerCase();
+		}
+
+		public Builder name(String name) { this.name = name; return this; }
+		public Builder mapFile(String mapFile) { this.mapFile = mapFile; return this; }
+		public Builder seed(long seed) { this.seed = seed; return this; }
+		public Builder endTime(long endTime) { this.endTime = endTime; return this; }
+		public Builder taxis(int taxis) { this.taxis = taxis; return this; }
+		public Builder depots(int depots) { this.depots = depots; return this; }
+		public Builder gasStations(int gasStations) { this.gasStations = gasStations; return this; }
+		public Builder initialCustomers(int initialCustomers) { this.initialCustomers = initialCustomers; return this; }
+		public Builder customersPer100Nodes(int customers) { this.customersPer100Nodes = customers; return this; }
+		public Builder demandEndTime(long demandEndTime) { this.demandEndTime = demandEndTime; return this; }
+		public Builder hotspotNode(int hotspotNode) { this.hotspotNode = hotspotNode; return this; }
+		public Builder traceFile(String traceFile) { this.traceFile = traceFile; return this; }
+		public Builder demandModelFile(String demandModelFile) { this.demandModelFile = demandModelFile; return this; }
+		public Builder signalDrop(double signalDrop) { this.signalDrop = signalDrop; return this; }
+		public Builder taxiVSCustomer(double taxiVSCustomer) { this.taxiVSCustomer = taxiVSCustomer; return this; }
+		public Builder fieldMode(GradientField.Mode fieldMode) { this.fieldMode = fieldMode; return this; }
+		public Builder dispatchMode(RadioDispatcher.Mode dispatchMode) { this.dispatchMode = dispatchMode; return this; }
+		public Builder radius(double radius) { this.radius = radius; return this; }
+		public Builder dispatchBatchSize(int size) { this.dispatchBatchSize = size; return this; }
+		public Builder networkDistances(boolean networkDistances) { this.networkDistances = networkDistances; return this; }
+		public Builder skipIdleTime(boolean skipIdleTime) { this.skipIdleTime = skipIdleTime; return this; }
+		public Builder journalFile(String journalFile) { this.journalFile = journalFile; return this; }
+		public Builder spillFile(String spillFile) { this.spillFile = spillFile; return this; }
+		public Builder metricsFile(String metricsFile) { this.metricsFile = metricsFile; return this; }
+		public Builder journalEvents(EventJournal.Type... types) {
+			journalEvents = EnumSet.noneOf(EventJournal.Type.class);
+			journalEvents.addAll(Arrays.asList(types));
+			return this;
+		}
+		public Builder printStatistics(boolean printStatistics) { this.printStatistics = printStatistics; return this; }
+
+		/**
+		 * Sets the value of a column of a scenario file.
+		 *
+		 * @throws IllegalArgumentException if there is no such column or the
+		 * value can't be parsed
+		 */
+		Builder set(String key, String value) {
+			switch (key) {
+			case "name": return name(value);
+			case "algorithm": return this;
+			case "map": return mapFile(value);
+			case "seed": return seed(Long.parseLong(value));
+			case "endTime": return endTime(Long.parseLong(value));
+			case "taxis": return taxis(Integer.parseInt(value));
+			case "depots": return depots(Integer.parseInt(value));
+			case "gasStations": return gasStations(Integer.parseInt(value));
+			case "initialCustomers": return initialCustomers(Integer.parseInt(value));
+			case "customersPer100Nodes": return customersPer100Nodes(Integer.parseInt(value));
+			case "demandEndTime": return demandEndTime(Long.parseLong(value));
+			case "hotspotNode": return hotspotNode(Integer.parseInt(value));
+			case "trace": return traceFile(value);
+			case "demandModel": return demandModelFile(value);
+			case "signalDrop": return signalDrop(Double.parseDouble(value));
+			case "taxiVSCustomer": return taxiVSCustomer(Double.parseDouble(value));
+			case "fieldMode": return fieldMode(GradientField.Mode.valueOf(value));
+			case "dispatchMode": return dispatchMode(RadioDispatcher.Mode.valueOf(value));
+			case "radius": return radius(Double.parseDouble(value));
+			case "dispatchBatchSize": return dispatchBatchSize(Integer.parseInt(value));
+			case "networkDistances": return networkDistances(Boolean.parseBoolean(value));
+			case "skipIdleTime": return skipIdleTime(Boolean.parseBoolean(value));
+			case "journal": return journalFile(value);
+			case "spill": return spillFile(value);
+			case "metrics": return metricsFile(value);
+			case "journalEvents": return journalEvents(eventTypes(value));
+			case "printStatistics": return printStatistics(Boolean.parseBoolean(value));
+			default: throw new IllegalArgumentException("Unknown column: " + key);
+			}
+		}
+
+		private static EventJournal.Type[] eventTypes(String value) {
+			String[] names = value.split("\\s+");
+			EventJournal.Type[] types = new EventJournal.Type[names.length];
+			for (int i = 0; i < names.length; i++) {
+				types[i] = EventJournal.Type.valueOf(names[i]);
+			}
+			return types;
+		}
+
+		public Scenario build() {
+			if (initialCustomers > taxis) {
+				throw new IllegalArgumentException("Number of initial customers is greater than the number of taxis");
+			}
+			if (customersPer100Nodes <= 0) {
+				throw new IllegalArgumentException("customersPer100Nodes has to be positive: " + customersPer100Nodes);
+			}
+			if (traceFile != null && demandModelFile != null) {
+				throw new IllegalArgumentException("A scenario can't have both a trace and a demand model");
+			}
+			return new Scenario(this);
+		}
+	}
+}
@@ -1,62 +1,325 @@
 package taxi;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
 import com.github.rinde.rinsim.core.model.pdp.Parcel;
 
+/**
+ * Collects the times of every customer and the statistics of a run.
+ * <p>
+ * By default all records stay in memory until the end of the run. For long
+ * runs the logger can spill instead: records of delivered customers are 
+ * appended in batches to a file and their slots are reused by new 
+ * customers, so memory only grows with the number of customers that are 
+ * waiting or in transport at the same time. The summary statistics are kept
+ * as running aggregates either way, the raw data is read back from the 
+ * file when it is printed.
+ */
 public class SimpleLogger {
-	private List<Parcel> customers;
-	private Map<Parcel, Long> customerRegistrationTime;
-	private Map<Parcel, Long> customerPickupTime;
-	private Map<Parcel, Long> customerDeliveryTime;
+	
+	/**
+	 * Time of a pickup or delivery that hasn't happened (yet), or
+	 * registration time of a free slot
+	 */
+	private static final long NO_TIME = -1;
+	
+	/**
+	 * Number of delivered records written to the spill file at once
+	 */
+	private static final int SPILL_BATCH = 4096;
+	
+	/**
+	 * Register, pickup and delivery time of every customer, indexed by the
+	 * slot the customer got when it was registered. Only the first 
+	 * slotCount entries are used. Without spilling slots are given out in
+	 * order of registration and never reused.
+	 */
+	private long[] registrationTimes;
+	private long[] pickupTimes;
+	private long[] deliveryTimes;
+	private int slotCount;
+	
+	/**
+	 * Slots of spilled customers, reused before new ones are added
+	 */
+	private int[] freeSlots;
+	private int freeCount;
+	
+	private int customerCount;
+	private int waitingCount;
+	
+	/**
+	 * File delivered records are appended to, null if everything is kept in
+	 * memory. Records that aren't written yet are buffered in spillBuffer, 
+	 * three times per record.
+	 */
+	private final Path spillFile;
+	private final long[] spillBuffer;
+	private int spillBuffered;
+	
 	private List<TaxiInterface> taxis;
 	
+	/**
+	 * Waiting and total trip times, updated as customers are picked up and
+	 * delivered, so reading them costs the same at any point of the run.
+	 * Only customers that were registered are counted.
+	 */
+	private final RunningStatistics registerToPickup;
+	private final RunningStatistics registerToDelivery;
+	private final LatencyHistogram registerToPickupHistogram;
+	private final LatencyHistogram registerToDeliveryHistogram;
+	
+	/**
+	 * Logger that keeps all records in memory.
+	 */
 	SimpleLogger() {
-		this.customers = new ArrayList<>();
-		this.customerRegistrationTime = new HashMap<>();
-		this.customerPickupTime = new HashMap<>();
-		this.customerDeliveryTime = new HashMap<>();
+		this.registrationTimes = new long[64];
+		this.pickupTimes = new long[64];
+		this.deliveryTimes = new long[64];
+		this.slotCount = 0;
+		this.freeSlots = new int[64];
+		this.freeCount = 0;
+		this.customerCount = 0;
+		this.spillFile = null;
+		this.spillBuffer = null;
 		this.taxis = new ArrayList<>();
+		this.registerToPickup = new RunningStatistics();
+		this.registerToDelivery = new RunningStatistics();
+		this.registerToPickupHistogram = new LatencyHistogram();
+		this.registerToDeliveryHistogram = new LatencyHistogram();
 	}
 	
+	/**
+	 * Logger that spills the records of delivered customers to a file.
+	 * 
+	 * @param spillFile created or emptied
+	 * @throws IOException
+	 */
+	SimpleLogger(Path spillFile) throws IOException {
+		this.registrationTimes = new long[64];
+		this.pickupTimes = new long[64];
+		this.deliveryTimes = new long[64];
+		this.slotCount = 0;
+		this.freeSlots = new int[64];
+		this.freeCount = 0;
+		this.customerCount = 0;
+		this.spillFile = spillFile;
+		this.spillBuffer = new long[3 * SPILL_BATCH];
+		this.spillBuffered = 0;
+		this.taxis = new ArrayList<>();
+		this.registerToPickup = new RunningStatistics();
+		this.registerToDelivery = new RunningStatistics();
+		this.registerToPickupHistogram = new LatencyHistogram();
+		this.registerToDeliveryHistogram = new LatencyHistogram();
+		Files.newOutputStream(spillFile).close();
+	}
+	
+	/**
+	 * Gives the customer a slot, the logger doesn't keep a reference to it.
+	 * 
+	 * @param customer has to be a Customer
+	 * @param time
+	 */
 	public void logCustomerRegistered(Parcel customer, long time) {
-		customers.add(customer);
-		customerRegistrationTime.put(customer, time);
+		int slot;
+		if (freeCount > 0) {
+			slot = freeSlots[--freeCount];
+		} else {
+			if (slotCount == registrationTimes.length) {
+				registrationTimes = Arrays.copyOf(registrationTimes, slotCount * 2);
+				pickupTimes = Arrays.copyOf(pickupTimes, slotCount * 2);
+				deliveryTimes = Arrays.copyOf(deliveryTimes, slotCount * 2);
+			}
+			slot = slotCount++;
+		}
+		((Customer) customer).id = slot;
+		registrationTimes[slot] = time;
+		pickupTimes[slot] = NO_TIME;
+		deliveryTimes[slot] = NO_TIME;
+		customerCount++;
+		waitingCount++;
 	}
 	
+	/**
+	 * Only the first pickup of a customer counts, later calls are ignored.
+	 */
 	public void logCustomerPickedUp(Parcel customer, long time) {
-		customerPickupTime.put(customer, time);
+		int slot = ((Customer) customer).id;
+		if (slot < 0 || pickupTimes[slot] != NO_TIME) { return; }
+		pickupTimes[slot] = time;
+		waitingCount--;
+		registerToPickup.add(time - registrationTimes[slot]);
+		registerToPickupHistogram.add(time - registrationTimes[slot]);
 	}
 	
+	/**
+	 * Only the first delivery of a customer counts, later calls are ignored.
+	 */
 	public void logCustomerDelivered(Parcel customer, long time) {
-		customerDeliveryTime.put(customer, time);
+		int slot = ((Customer) customer).id;
+		if (slot < 0 || deliveryTimes[slot] != NO_TIME) { return; }
+		deliveryTimes[slot] = time;
+		registerToDelivery.add(time - registrationTimes[slot]);
+		registerToDeliveryHistogram.add(time - registrationTimes[slot]);
+		if (spillFile != null) {
+			spill(slot);
+			((Customer) customer).id = -1;
+		}
 	}
 	
-	public void printAllCustomerRawData() {
-		for (Parcel customer: customers) {
-			System.out.println(customerRegistrationTime.get(customer));
-			System.out.println(customerPickupTime.get(customer));
-			System.out.println(customerDeliveryTime.get(customer));
-			System.out.println(" ");
+	/**
+	 * Moves the record in slot to the spill buffer and frees the slot.
+	 */
+	private void spill(int slot) {
+		spillBuffer[spillBuffered++] = registrationTimes[slot];
+		spillBuffer[spillBuffered++] = pickupTimes[slot];
+		spillBuffer[spillBuffered++] = deliveryTimes[slot];
+		registrationTimes[slot] = NO_TIME;
+		if (freeCount == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+		}
+		freeSlots[freeCount++] = slot;
+		if (spillBuffered == spillBuffer.length) {
+			flushSpillBuffer();
+		}
+	}
+	
+	// the file is only open while a batch is written, so there is nothing 
+	// to close at the end of a run
+	private void flushSpillBuffer() {
+		if (spillBuffered == 0) { return; }
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(spillFile, StandardOpenOption.APPEND)))) {
+			for (int i = 0; i < spillBuffered; i++) {
+				out.writeLong(spillBuffer[i]);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		spillBuffered = 0;
+	}
+	
+	/**
+	 * @return number of customers registered so far
+	 */
+	public int getNumberOfCustomers() {
+		return customerCount;
+	}
+	
+	/**
+	 * @return number of registered customers that haven't been picked up
+	 */
+	public int getNumberOfWaitingCustomers() {
+		return waitingCount;
+	}
+	
+	public long getNumberOfDeliveredCustomers() {
+		return registerToDelivery.getCount();
+	}
+	
+	public int getNumberOfTaxis() {
+		return taxis.size();
+	}
+	
+	public int getNumberOfFreeTaxis() {
+		int free = 0;
+		for (TaxiInterface t: taxis) {
+			if (t.isFree()) {
+				free++;
+			}
+		}
+		return free;
+	}
+	
+	public int getNumberOfParkedTaxis() {
+		int parked = 0;
+		for (TaxiInterface t: taxis) {
+			if (t.isParked()) {
+				parked++;
+			}
 		}
+		return parked;
 	}
 	
-	public void printAllCustomerRawDataCSV(char separator)
+	public int getNumberOfRefuellingTaxis() {
+		int refuelling = 0;
+		for (TaxiInterface t: taxis) {
+			if (t.isRefuelling()) {
+				refuelling++;
+			}
+		}
+		return refuelling;
+	}
+	
+	// prints like the boxed times it replaces, "null" if it didn't happen
+	private static String timeToString(long time) {
+		return time == NO_TIME ? "null" : Long.toString(time);
+	}
+	
+	/**
+	 * Record of every customer: first the spilled ones in order of delivery,
+	 * then the ones in memory. Without spilling that is the order of 
+	 * registration.
+	 */
+	private interface RecordVisitor {
+		void visit(long registered, long pickedUp, long delivered);
+	}
+	
+	private void forEachRecord(RecordVisitor visitor) {
+		if (spillFile != null) {
+			flushSpillBuffer();
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+					Files.newInputStream(spillFile)))) {
+				for (long records = Files.size(spillFile) / 24; records > 0; records--) {
+					visitor.visit(in.readLong(), in.readLong(), in.readLong());
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (registrationTimes[slot] != NO_TIME) {
+				visitor.visit(registrationTimes[slot], pickupTimes[slot], deliveryTimes[slot]);
+			}
+		}
+	}
+	
+	public void printAllCustomerRawData() {
+		forEachRecord(new RecordVisitor() {
+			@Override
+			public void visit(long registered, long pickedUp, long delivered) {
+				System.out.println(timeToString(registered));
+				System.out.println(timeToString(pickedUp));
+				System.out.println(timeToString(delivered));
+				System.out.println(" ");
+			}
+		});
+	}
+	
+	public void printAllCustomerRawDataCSV(final char separator)
 	{
 		System.out.println("register time" + separator + "pickup time" + separator + "delivery time");
-		for (Parcel customer: customers) {
-			System.out.print(customerRegistrationTime.get(customer));
-			System.out.print(separator);
-			System.out.print(customerPickupTime.get(customer));
-			System.out.print(separator);
-			System.out.print(customerDeliveryTime.get(customer));
-			System.out.println();
-		}
+		final StringBuilder line = new StringBuilder();
+		forEachRecord(new RecordVisitor() {
+			@Override
+			public void visit(long registered, long pickedUp, long delivered) {
+				line.setLength(0);
+				line.append(registered).append(separator)
+					.append(timeToString(pickedUp)).append(separator)
+					.append(timeToString(delivered));
+				System.out.println(line);
+			}
+		});
 	}
 	
 	public void printDistanceCoveredPerTaxi() {
@@ -77,83 +340,67 @@ public class SimpleLogger {
 	}
 	
 	public double getMeanTimeFromRegisterToPickup() {
-		DescriptiveStatistics stats = new DescriptiveStatistics();
-		for (Parcel c: customers) {
-			try {
-			stats.addValue(customerPickupTime.get(c) - customerRegistrationTime.get(c));
-			} catch (Exception e) {}
-		}
-		return stats.getMean();
+		return registerToPickup.getMean();
 	}
 	
 	public double getSDTimeFromRegisterToPickup() {
-		DescriptiveStatistics stats = new DescriptiveStatistics();
-		for (Parcel c: customers) {
-			try {
-			stats.addValue(customerPickupTime.get(c) - customerRegistrationTime.get(c));
-			} catch (Exception e) {}
-		}
-		return stats.getStandardDeviation();
+		return registerToPickup.getStandardDeviation();
+	}
+	
+	/**
+	 * @param percentile between 0 and 100
+	 */
+	public double getPercentileTimeFromRegisterToPickup(double percentile) {
+		return registerToPickupHistogram.getPercentile(percentile);
 	}
 	
 	public double getMeanTimeFromRegisterToDelivery() {
-		DescriptiveStatistics stats = new DescriptiveStatistics();
-		for (Parcel c: customers) {
-			try {
-			stats.addValue(customerDeliveryTime.get(c) - customerRegistrationTime.get(c));
-			} catch (Exception e) {}
-		}
-		return stats.getMean();
+		return registerToDelivery.getMean();
 	}
 	
 	public double getSDTimeFromRegisterToDelivery() {
-		DescriptiveStatistics stats = new DescriptiveStatistics();
-		for (Parcel c: customers) {
-			try {
-			stats.addValue(customerDeliveryTime.get(c) - customerRegistrationTime.get(c));
-			} catch (Exception e) {}
-		}
-		return stats.getStandardDeviation();
+		return registerToDelivery.getStandardDeviation();
+	}
+	
+	/**
+	 * @param percentile between 0 and 100
+	 */
+	public double getPercentileTimeFromRegisterToDelivery(double percentile) {
+		return registerToDeliveryHistogram.getPercentile(percentile);
 	}
 	
 	public double getMeanDistanceCoveredByTaxis() {
-		DescriptiveStatistics stats = new DescriptiveStatistics();
-		for (TaxiInterface t: taxis) {
-			try {
-			stats.addValue(t.getDistanceCovered());
-			} catch (Exception e) {}
-		}
-		return stats.getMean();
+		return distancesCovered().getMean();
 	}
 	
 	public double getSDDistanceCoveredByTaxis() {
-		DescriptiveStatistics stats = new DescriptiveStatistics();
-		for (TaxiInterface t: taxis) {
-			try {
-			stats.addValue(t.getDistanceCovered());
-			} catch (Exception e) {}
-		}
-		return stats.getStandardDeviation();
+		return distancesCovered().getStandardDeviation();
 	}
 	
 	public double getMeanNoOfCustomersServedByTaxis() {
-		DescriptiveStatistics stats = new DescriptiveStatistics();
+		return customersServed().getMean();
+	}
+	
+	public double getSDNoOfCustomersServedByTaxis() {
+		return customersServed().getStandardDeviation();
+	}
+	
+	// taxis keep their own counters, which change every tick, so these are
+	// collected when asked for
+	private RunningStatistics distancesCovered() {
+		RunningStatistics stats = new RunningStatistics();
 		for (TaxiInterface t: taxis) {
-			try {
-			stats.addValue(t.getNumberOfCustomersServed());
-			} catch (Exception e) {}
+			stats.add(t.getDistanceCovered());
 		}
-		return stats.getMean();
+		return stats;
 	}
 	
-	public double getSDNoOfCustomersServedByTaxis() {
-		DescriptiveStatistics stats = new DescriptiveStatistics();
+	private RunningStatistics customersServed() {
+		RunningStatistics stats = new RunningStatistics();
 		for (TaxiInterface t: taxis) {
-			try {
-			stats.addValue(t.getNumberOfCustomersServed());
-			} catch (Exception e) {}
+			stats.add(t.getNumberOfCustomersServed());
 		}
-		return stats.getStandardDeviation();
+		return stats;
 	}
 	
 	public void printAllStatistics() {
@@ -167,10 +414,18 @@ public class SimpleLogger {
         System.out.println(getMeanTimeFromRegisterToPickup());
         System.out.println("sd register to pickup time");
         System.out.println(getSDTimeFromRegisterToPickup());
+        System.out.println("p50 / p95 / p99 register to pickup time");
+        System.out.println(getPercentileTimeFromRegisterToPickup(50) + " / " 
+        		+ getPercentileTimeFromRegisterToPickup(95) + " / "
+        		+ getPercentileTimeFromRegisterToPickup(99));
         System.out.println("mean register to delivery time");
         System.out.println(getMeanTimeFromRegisterToDelivery());
         System.out.println("sd register to delivery time");
         System.out.println(getSDTimeFromRegisterToDelivery());
+        System.out.println("p50 / p95 / p99 register to delivery time");
+        System.out.println(getPercentileTimeFromRegisterToDelivery(50) + " / " 
+        		+ getPercentileTimeFromRegisterToDelivery(95) + " / "
+        		+ getPercentileTimeFromRegisterToDelivery(99));
         System.out.println("mean distance covered by taxis");
         System.out.println(getMeanDistanceCoveredByTaxis());
         System.out.println("sd distance covered by taxis");
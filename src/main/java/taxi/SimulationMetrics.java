@@ -0,0 +1,259 @@
+package taxi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.github.rinde.rinsim.core.model.time.TickListener;
+import com.github.rinde.rinsim.core.model.time.TimeLapse;
+
+/**
+ * Live metrics of a running simulation, published as a JMX MBean (see 
+ * {@link SimulationMetricsMBean}) and optionally appended to a CSV file, so
+ * a long run can be watched without stopping it.
+ * <p>
+ * Everything is sampled on the simulation thread, once per second of wall
+ * clock time, and published in volatile fields, so JMX clients never touch
+ * the logger or the taxis. Between samples a tick only costs two calls to
+ * System.nanoTime().
+ * <p>
+ * Has to be added to the simulator before the other tick listeners, so that
+ * its tick() starts the tick phase and its afterTick() ends it.
+ */
+public class SimulationMetrics implements TickListener, SimulationMetricsMBean, Closeable {
+
+	private static final long SAMPLE_NANOS = 1000000000L;
+	private static final String DOMAIN = "taxi";
+
+	private final SimpleLogger log;
+
+	/**
+	 * Timing of the ticks since the previous sample, only used by the 
+	 * simulation thread
+	 */
+	private long ticks;
+	private long tickStart;
+	private long tickEnd;
+	private long tickPhaseNanos;
+	private long afterTickPhaseNanos;
+	private long sampleStart;
+	private long sampleTicks;
+
+	private volatile long sampledTicks;
+	private volatile long simulationTime;
+	private volatile double ticksPerSecond;
+	private volatile int registeredCustomers;
+	private volatile int waitingCustomers;
+	private volatile long deliveredCustomers;
+	private volatile int freeTaxis;
+	private volatile int busyTaxis;
+	private volatile int refuellingTaxis;
+	private volatile double waitTimeP50;
+	private volatile double waitTimeP95;
+	private volatile double waitTimeP99;
+	private volatile double tickPhaseMicros;
+	private volatile double afterTickPhaseMicros;
+
+	private ObjectName name;
+	private Writer snapshots;
+
+	SimulationMetrics(SimpleLogger log) {
+		this.log = log;
+		this.sampleStart = System.nanoTime();
+		this.tickEnd = -1;
+	}
+
+	/**
+	 * Publishes the metrics on the platform MBean server as 
+	 * taxi:type=SimulationMetrics,name=name.
+	 *
+	 * @param name distinguishes simulations running in the same JVM
+	 * @throws JMException if the name is taken
+	 */
+	public void register(String name) throws JMException {
+		ObjectName objectName = new ObjectName(DOMAIN + ":type=SimulationMetrics,name=" 
+				+ ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.name = objectName;
+	}
+
+	/**
+	 * Appends every sample to file as a line of CSV.
+	 *
+	 * @param file created or overwritten
+	 * @throws IOException
+	 */
+	public void snapshotTo(Path file) throws IOException {
+		snapshots = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+		snapshots.write("ticks,simulation time,ticks per second,registered customers,"
+				+ "waiting customers,delivered customers,free taxis,busy taxis,refuelling taxis,"
+				+ "wait p50,wait p95,wait p99,tick phase us,after tick phase us\n");
+		snapshots.flush();
+	}
+
+	@Override
+	public void tick(TimeLapse time) {
+		long now = System.nanoTime();
+		if (tickEnd >= 0) {
+			afterTickPhaseNanos += now - tickEnd;
+		}
+		tickStart = now;
+	}
+
+	@Override
+	public void afterTick(TimeLapse time) {
+		long now = System.nanoTime();
+		tickPhaseNanos += now - tickStart;
+		tickEnd = now;
+		ticks++;
+		sampleTicks++;
+		if (now - sampleStart >= SAMPLE_NANOS) {
+			sample(time.getEndTime(), now);
+		}
+	}
+
+	private void sample(long simTime, long now) {
+		sampledTicks = ticks;
+		simulationTime = simTime;
+		ticksPerSecond = sampleTicks * 1e9 / (now - sampleStart);
+		registeredCustomers = log.getNumberOfCustomers();
+		waitingCustomers = log.getNumberOfWaitingCustomers();
+		deliveredCustomers = log.getNumberOfDeliveredCustomers();
+		int free = log.getNumberOfFreeTaxis();
+		int refuelling = log.getNumberOfRefuellingTaxis();
+		freeTaxis = free;
+		refuellingTaxis = refuelling;
+		busyTaxis = log.getNumberOfTaxis() - free - refuelling;
+		waitTimeP50 = log.getPercentileTimeFromRegisterToPickup(50);
+		waitTimeP95 = log.getPercentileTimeFromRegisterToPickup(95);
+		waitTimeP99 = log.getPercentileTimeFromRegisterToPickup(99);
+		tickPhaseMicros = tickPhaseNanos / 1e3 / sampleTicks;
+		afterTickPhaseMicros = afterTickPhaseNanos / 1e3 / sampleTicks;
+
+		sampleStart = now;
+		sampleTicks = 0;
+		tickPhaseNanos = 0;
+		afterTickPhaseNanos = 0;
+
+		if (snapshots != null) {
+			writeSnapshot();
+		}
+	}
+
+	private void writeSnapshot() {
+		StringBuilder line = new StringBuilder(128);
+		line.append(sampledTicks).append(',').append(simulationTime).append(',')
+			.append(ticksPerSecond).append(',').append(registeredCustomers).append(',')
+			.append(waitingCustomers).append(',').append(deliveredCustomers).append(',')
+			.append(freeTaxis).append(',').append(busyTaxis).append(',')
+			.append(refuellingTaxis).append(',').append(waitTimeP50).append(',')
+			.append(waitTimeP95).append(',').append(waitTimeP99).append(',')
+			.append(tickPhaseMicros).append(',').append(afterTickPhaseMicros).append('\n');
+		try {
+			snapshots.append(line);
+			snapshots.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Unregisters the MBean and closes the snapshot file.
+	 */
+	@Override
+	public void close() {
+		try {
+			if (name != null) {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+				name = null;
+			}
+			if (snapshots != null) {
+				snapshots.close();
+				snapshots = null;
+			}
+		} catch (JMException | IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public long getTicks() {
+		return sampledTicks;
+	}
+
+	@Override
+	public long getSimulationTime() {
+		return simulationTime;
+	}
+
+	@Override
+	public double getTicksPerSecond() {
+		return ticksPerSecond;
+	}
+
+	@Override
+	public int getRegisteredCustomers() {
+		return registeredCustomers;
+	}
+
+	@Override
+	public int getWaitingCustomers() {
+		return waitingCustomers;
+	}
+
+	@Override
+	public long getDeliveredCustomers() {
+		return deliveredCustomers;
+	}
+
+	@Override
+	public int getFreeTaxis() {
+		return freeTaxis;
+	}
+
+	@Override
+	public int getBusyTaxis() {
+		return busyTaxis;
+	}
+
+	@Override
+	public int getRefuellingTaxis() {
+		return refuellingTaxis;
+	}
+
+	@Override
+	public double getWaitTimeP50() {
+		return waitTimeP50;
+	}
+
+	@Override
+	public double getWaitTimeP95() {
+		return waitTimeP95;
+	}
+
+	@Override
+	public double getWaitTimeP99() {
+		return waitTimeP99;
+	}
+
+	@Override
+	public double getTickPhaseMicros() {
+		return tickPhaseMicros;
+	}
+
+	@Override
+	public double getAfterTickPhaseMicros() {
+		return afterTickPhaseMicros;
+	}
+}
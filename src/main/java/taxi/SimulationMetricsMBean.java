@@ -0,0 +1,56 @@
+package taxi;
+
+/**
+ * Live counters of a running simulation, as exposed over JMX by
+ * {@link SimulationMetrics}. All values are taken from the last sample,
+ * which is at most a second old.
+ */
+public interface SimulationMetricsMBean {
+
+	long getTicks();
+
+	/**
+	 * @return simulation time at the last sample
+	 */
+	long getSimulationTime();
+
+	/**
+	 * @return ticks per second of wall clock time since the previous sample
+	 */
+	double getTicksPerSecond();
+
+	int getRegisteredCustomers();
+
+	int getWaitingCustomers();
+
+	long getDeliveredCustomers();
+
+	int getFreeTaxis();
+
+	int getBusyTaxis();
+
+	int getRefuellingTaxis();
+
+	/**
+	 * @return median time from registration to pickup of all customers 
+	 * picked up so far
+	 */
+	double getWaitTimeP50();
+
+	double getWaitTimeP95();
+
+	double getWaitTimeP99();
+
+	/**
+	 * @return mean wall clock time, in microseconds, of the tick() phase of
+	 * the ticks since the previous sample
+	 */
+	double getTickPhaseMicros();
+
+	/**
+	 * @return mean wall clock time, in microseconds, between the end of the
+	 * tick() phase and the start of the next tick: the afterTick() phase and
+	 * the simulator's own work
+	 */
+	double getAfterTickPhaseMicros();
+}
@@ -15,36 +15,13 @@
  */
 package taxi;
 
-import static com.google.common.collect.Maps.newHashMap;
-
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
-
 import javax.annotation.Nullable;
 
-import org.apache.commons.math3.random.RandomGenerator;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Monitor;
 
 import com.github.rinde.rinsim.core.Simulator;
-import com.github.rinde.rinsim.core.model.pdp.DefaultPDPModel;
-import com.github.rinde.rinsim.core.model.pdp.Parcel;
-import com.github.rinde.rinsim.core.model.road.RoadModel;
-import com.github.rinde.rinsim.core.model.road.RoadModelBuilders;
-import com.github.rinde.rinsim.core.model.road.RoadModels;
-import com.github.rinde.rinsim.core.model.time.TickListener;
-import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.event.Listener;
-import com.github.rinde.rinsim.geom.Graph;
-import com.github.rinde.rinsim.geom.MultiAttributeData;
-import com.github.rinde.rinsim.geom.Point;
-import com.github.rinde.rinsim.geom.io.DotGraphIO;
-import com.github.rinde.rinsim.geom.io.Filters;
 import com.github.rinde.rinsim.ui.View;
 import com.github.rinde.rinsim.ui.renderers.GraphRoadModelRenderer;
 import com.github.rinde.rinsim.ui.renderers.RoadUserRenderer;
@@ -60,41 +37,7 @@ import com.github.rinde.rinsim.ui.renderers.RoadUserRenderer;
  */
 public final class SimulationRadioTaxi {
 
-	private static final double RADIUS = 20000;
-	private static final int MAX_TANK = 5000;
-	private static final int NUM_GAS_STATIONS = 1;
-	private static final long STANDARD_SIM_TIME = 8 * 60 * 60 * 1000;
-
-	/******************/
-
-	private static final int NUM_DEPOTS = 1;
-	private static final int NUM_TAXIS = 20;
-
-	// number of nodes
-	private static final int NODE_NUM = 100;
-	/**
-	 * Initial number of customers
-	 */
-	private static final int NUM_CUSTOMERS = 0;
-
-	// time in ms
-	private static final long SERVICE_DURATION = 60000;
-	private static final int TAXI_CAPACITY = 10;
-	private static final int DEPOT_CAPACITY = 100;
-
 	private static final int SPEED_UP = 4;
-	private static final int MAX_CAPACITY = 3;
-	private static final double NEW_CUSTOMER_PROB = .001;
-
-	// per 100 node
-	private static final int TOTAL_CUSTOMER = 50 * 4;// *4 is for the
-	// manipulated version,
-	// with customers only
-	// spawning in the first
-	// 2 hours
-
-	private static final String MAP_FILE = "maps\\test.dot";
-	private static final Map<String, Graph<MultiAttributeData>> GRAPH_CACHE = newHashMap();
 
 	private static final long TEST_STOP_TIME = 20 * 60 * 1000;
 	private static final int TEST_SPEED_UP = 64;
@@ -107,16 +50,14 @@ public final class SimulationRadioTaxi {
 	 * 
 	 * @param args
 	 *            The first option may optionally indicate the end time of the
-	 *            simulation.
+	 *            simulation, the second the map. To run it without a GUI see
+	 *            {@link HeadlessSimulation}.
 	 */
 	public static void main(@Nullable String[] args) {
-		if (NUM_CUSTOMERS > NUM_TAXIS) {
-			System.out.println("Number of initial customers is greater than the number of taxis");
-			System.exit(1);
-		}
-		final long endTime = args != null && args.length >= 1 ? Long.parseLong(args[0]) : STANDARD_SIM_TIME;
+		final long endTime = args != null && args.length >= 1 ? Long.parseLong(args[0]) 
+				: ExampleScenarios.STANDARD_SIM_TIME;
 
-		final String graphFile = args != null && args.length >= 2 ? args[1] : MAP_FILE;
+		final String graphFile = args != null && args.length >= 2 ? args[1] : ExampleScenarios.MAP_FILE;
 		run(false, endTime, graphFile, null /* new Display() */, null, null);
 	}
 
@@ -127,7 +68,7 @@ public final class SimulationRadioTaxi {
 	 *            If <code>true</code> enables the test mode.
 	 */
 	public static void run(boolean testing) {
-		run(testing, Long.MAX_VALUE, MAP_FILE, null, null, null);
+		run(testing, Long.MAX_VALUE, ExampleScenarios.MAP_FILE, null, null, null);
 	}
 
 	/**
@@ -152,177 +93,11 @@ public final class SimulationRadioTaxi {
 
 		final View.Builder view = createGui(testing, display, m, list);
 
-		// use map of leuven
-		final Simulator simulator = Simulator.builder().addModel(RoadModelBuilders.staticGraph(loadGraph(graphFile)))
-				.addModel(DefaultPDPModel.builder()).addModel(view).build();
-
-		final RandomGenerator rng = simulator.getRandomGenerator();
-
-		final RoadModel roadModel = simulator.getModelProvider().getModel(RoadModel.class);
-
-		final SimpleLogger log = new SimpleLogger();
+		TaxiSimulation simulation = TaxiSimulation.create(ExampleScenarios.radio(endTime, graphFile), 
+				Simulator.builder().addModel(view));
+		simulation.run();
 
-		// add depots
-		for (int i = 0; i < NUM_DEPOTS; i++) {
-			simulator.register(new TaxiBase(roadModel.getRandomPosition(rng), DEPOT_CAPACITY));
-		}
-
-		// add gas stations
-		for (int i = 0; i < NUM_GAS_STATIONS; i++) {
-			simulator.register(new GasStation(roadModel.getRandomPosition(rng), DEPOT_CAPACITY));
-		}
-
-		// this list is used to assign initial customers to taxis - doesn't take
-		// the distance between the taxi and the customer into account; first
-		// customer
-		// gets the first taxi etc
-		ArrayList<Taxi> initialListOfTaxies = new ArrayList<>();
-		// add taxis
-		for (int i = 0; i < NUM_TAXIS; i++) {
-			int tankSize = (MAX_TANK / 2) + rng.nextInt(MAX_TANK / 2);
-			// int gas = Math.round(tankSize / 3) + rng.nextInt(tankSize / 2);
-			Taxi taxi = new Taxi(roadModel.getRandomPosition(rng), TAXI_CAPACITY, tankSize, tankSize, log);
-			simulator.register(taxi);
-			initialListOfTaxies.add(taxi);
-			log.registerTaxi(taxi);
-		}
-
-		// add customers and assign them to taxis
-		for (int i = 0; i < NUM_CUSTOMERS; i++) {
-			Customer cust = generateNewRandomCustomer(roadModel, rng);
-			simulator.register(cust);
-			// RoadModels.findClosestObject(cust.getPickupLocation(), roadModel,
-			// Taxi.class).assingCustomer(cust);
-			initialListOfTaxies.get(i).assignCustomer(cust);
-			log.logCustomerRegistered(cust, 0);
-		}
-
-		simulator.addTickListener(new TickListener() {
-			ArrayList<Parcel> bufferedCustomers = new ArrayList<>();
-			double radius = RADIUS;
-
-			@Override
-			public void tick(TimeLapse time) {
-				// stop the simulation if time runs out
-				if (time.getStartTime() > endTime) {
-					simulator.stop();
-					log.printAllStatistics();
-				}
-				// if we still have time, roll the dice and maybe add a new
-				// customer
-				// USE THIS TO CREATE FULLY RANDOM CUSTOMERS
-				/*
-				 * else { if (rng.nextDouble() < NEW_CUSTOMER_PROB) { Parcel
-				 * cust = generateNewRandomCustomer(roadModel, rng);
-				 * bufferedCustomers.add(cust); simulator.register(cust);
-				 * log.logCustomerRegistered(cust, time.getTime()); }
-				 */
-
-				// USE THIS TO CREATE CUSTOMERS IN A REGULAR FASHION
-				// THE SECOND CONDITION OF THE IF CAN BE REMOVED TO LET
-				// CUSTOMERS BE CREATED THROUGHOUT THE SIM
-				else if ((time.getTime()) % ((30000000 / TOTAL_CUSTOMER) / (NODE_NUM / 100)) == 0
-						&& time.getTime() < 2 * 60 * 60 * 1000) {
-					// Parcel cust = generateNewRandomCustomer(roadModel, rng);
-					Parcel cust = generateRandomCustomerNearNode(88, roadModel, rng);
-					bufferedCustomers.add(cust);
-					simulator.register(cust);
-					log.logCustomerRegistered(cust, time.getTime());
-				}
-				// if there are some customers that haven't been assigned to a
-				// taxi, assign them now
-				if (bufferedCustomers.size() > 0) {
-					Parcel cust = bufferedCustomers.get(0);
-					Taxi taxi = callForTaxi(cust.getPickupLocation(), roadModel, rng, radius);
-					if (taxi != null) {
-						taxi.assignCustomer(cust);
-						bufferedCustomers.remove(0);
-						radius = RADIUS;
-					}
-					radius += 0.5 * RADIUS;
-				}
-
-			}
-
-			@Override
-			public void afterTick(TimeLapse timeLapse) {
-			}
-		});
-
-		simulator.start();
-
-		return simulator;
-	}
-
-	/**
-	 * Try to find a free taxi within a given radius. If it fails, another call
-	 * will be made, with increased radius from the tick listener.
-	 * 
-	 * @param custLocation
-	 *            Customers position
-	 * @param rm
-	 * @param rng
-	 * @return First taxi to respond to the broadcast (kind of)
-	 */
-	private static Taxi callForTaxi(Point custLocation, RoadModel rm, RandomGenerator rng, double radius) {
-
-		Collection<Taxi> taxisWithinRadius = new ArrayList<>();
-		ArrayList<Taxi> freeTaxisWithinRadius = new ArrayList<>();
-
-		taxisWithinRadius = RoadModels.findObjectsWithinRadius(custLocation, rm, radius, Taxi.class);
-
-		for (Taxi t : taxisWithinRadius) {
-			if (t.isFree()) {
-				freeTaxisWithinRadius.add(t);
-			}
-		}
-
-		if (freeTaxisWithinRadius.isEmpty()) {
-			return null;
-		} else {
-			int chosenTaxi = rng.nextInt(freeTaxisWithinRadius.size());
-			return freeTaxisWithinRadius.get(chosenTaxi);
-		}
-	}
-
-	private static Customer generateNewRandomCustomer(RoadModel rm, RandomGenerator rng) {
-		Point custLocation = rm.getRandomPosition(rng);
-		Point custDestination = rm.getRandomPosition(rng);
-
-		return new Customer(Parcel.builder(custLocation, custDestination).serviceDuration(SERVICE_DURATION)
-				.neededCapacity(1 + rng.nextInt(MAX_CAPACITY)).buildDTO());
-	}
-
-	private static Customer generateRandomCustomerNearNode(int node, RoadModel rm, RandomGenerator rng) {
-		int rand = rng.nextInt(5);
-		int custNode = 0;
-		int i = 0;
-		Point p = null;
-		Graph<MultiAttributeData> graph = loadGraph(MAP_FILE);
-		Iterator<Point> iter = graph.getNodes().iterator();
-		while (i < node && iter.hasNext()) {
-			p = iter.next();
-		}
-		Collection<Point> nodes = graph.getIncomingConnections(p);
-
-		iter = nodes.iterator();
-
-		i = 0;
-
-		while (i < rand && iter.hasNext()) {
-
-			p = iter.next();
-		}
-
-		Point custLocation = p;
-		Point custDestination = graph.getRandomNode(rng);
-
-		Customer cust = new Customer(Parcel.builder(custLocation, custDestination).serviceDuration(SERVICE_DURATION)
-				.neededCapacity(1 + rng.nextInt(MAX_CAPACITY)).buildDTO());
-
-		System.out.println("NEW CUSTOMER SOMEWHERE");
-
-		return cust;
+		return simulation.getSimulator();
 	}
 
 	static View.Builder createGui(boolean testing, @Nullable Display display, @Nullable Monitor m,
@@ -346,22 +121,4 @@ public final class SimulationRadioTaxi {
 		}
 		return view;
 	}
-
-	// load the graph file
-	static Graph<MultiAttributeData> loadGraph(String name) {
-		try {
-			if (GRAPH_CACHE.containsKey(name)) {
-				return GRAPH_CACHE.get(name);
-			}
-			final Graph<MultiAttributeData> g = DotGraphIO.getMultiAttributeGraphIO(Filters.selfCycleFilter())
-					.read(name);
-
-			GRAPH_CACHE.put(name, g);
-			return g;
-		} catch (final FileNotFoundException e) {
-			throw new IllegalStateException(e);
-		} catch (final IOException e) {
-			throw new IllegalStateException(e);
-		}
-	}
 }
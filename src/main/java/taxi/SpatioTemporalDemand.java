@@ -0,0 +1,262 @@
+package taxi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Customers arriving at random (a Poisson process) with an intensity that
+ * varies over the nodes of the map and over time. The day is split in
+ * buckets, each with its own arrival rate per node, for customers waiting
+ * there, and weights per node for where they go to. Origins and
+ * destinations are drawn from alias tables (see AliasTable), so an arrival
+ * costs the same on the full Leuven map as on a test map, however many
+ * hotspots a bucket has.
+ * <p>
+ * Models are read from CSV files (see load), one node of a bucket per
+ * line:
+ *
+ * <pre>
+ * from,node,origin,destination
+ * # morning rush hour: to the station
+ * 0,*,10,1
+ * 0,88,120,0
+ * 0,412,60,0
+ * 0,1030,0,500
+ * # rest of the day
+ * 3600000,*,5,1
+ * </pre>
+ *
+ * from is the start of the bucket in ms, a bucket lasts until the start of
+ * the next one or the end time of the demand. origin is the number of
+ * customers per hour waiting at the node, destination is a relative weight.
+ * Node * stands for every node of the map, values of a node add up. Nodes
+ * that aren't mentioned have 0 for both, if all destinations of a bucket
+ * are 0 customers go anywhere. The header (exactly HEADER) is optional,
+ * lines starting with # are ignored.
+ */
+final class SpatioTemporalDemand implements DemandSource {
+
+	static final String HEADER = "from,node,origin,destination";
+	private static final double MS_PER_HOUR = 60 * 60 * 1000;
+
+	private final RandomGenerator rng;
+	private final long endTime;
+	/**
+	 * Start times of the buckets, ascending
+	 */
+	private final long[] bucketStarts;
+	/**
+	 * Customers per ms of every bucket, 0 if nobody arrives in it
+	 */
+	private final double[] rates;
+	/**
+	 * Per bucket, null where the rate is 0
+	 */
+	private final AliasTable[] origins;
+	/**
+	 * Per bucket, null to go anywhere
+	 */
+	private final AliasTable[] destinations;
+	private final int nodes;
+
+	/**
+	 * Drawn on first use, so no random numbers are taken before the run
+	 * starts
+	 */
+	private long nextTime = -1;
+	private int bucket;
+	private int origin = -1;
+	private int destination = -1;
+
+	/**
+	 * @param rng
+	 * @param nodes number of nodes of the map
+	 * @param bucketStarts start times in ms, ascending
+	 * @param originRates per bucket, customers per hour waiting at every node
+	 * @param destinationWeights per bucket, weight of every node, all 0 to
+	 * go anywhere
+	 * @param endTime no customers arrive from this time on
+	 */
+	SpatioTemporalDemand(RandomGenerator rng, int nodes, long[] bucketStarts, double[][] originRates,
+			double[][] destinationWeights, long endTime) {
+		int buckets = bucketStarts.length;
+		if (originRates.length != buckets || destinationWeights.length != buckets) {
+			throw new IllegalArgumentException("Every bucket needs origin and destination weights");
+		}
+		this.rng = rng;
+		this.nodes = nodes;
+		this.endTime = endTime;
+		this.bucketStarts = bucketStarts.clone();
+		rates = new double[buckets];
+		origins = new AliasTable[buckets];
+		destinations = new AliasTable[buckets];
+		for (int b = 0; b < buckets; b++) {
+			if (b > 0 && bucketStarts[b] <= bucketStarts[b - 1]) {
+				throw new IllegalArgumentException("Buckets are not ordered by time: " + bucketStarts[b]);
+			}
+			double perHour = sum(originRates[b]);
+			if (perHour > 0) {
+				rates[b] = perHour / MS_PER_HOUR;
+				origins[b] = new AliasTable(originRates[b]);
+			}
+			if (sum(destinationWeights[b]) > 0) {
+				destinations[b] = new AliasTable(destinationWeights[b]);
+			}
+		}
+	}
+
+	/**
+	 * Reads a model, see the class comment.
+	 *
+	 * @param file
+	 * @param map the nodes of the model have to be nodes of map
+	 * @param rng
+	 * @param endTime no customers arrive from this time on
+	 * @throws IOException
+	 * @throws IllegalArgumentException if a line isn't valid
+	 */
+	static SpatioTemporalDemand load(Path file, RoadGraph map, RandomGenerator rng, long endTime)
+			throws IOException {
+		int n = map.nodeCount();
+		List<Long> starts = new ArrayList<>();
+		List<double[]> originRates = new ArrayList<>();
+		List<double[]> destinationWeights = new ArrayList<>();
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			int lineNumber = 0;
+			String line;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) { continue; }
+				// header, before the first bucket
+				if (starts.isEmpty() && line.equals(HEADER)) { continue; }
+				String where = file + ":" + lineNumber + ": ";
+				String[] cells = line.split(",", -1);
+				if (cells.length != 4) {
+					throw new IllegalArgumentException(where + "expected " + HEADER);
+				}
+				long from;
+				double o;
+				double d;
+				try {
+					from = Long.parseLong(cells[0].trim());
+					o = Double.parseDouble(cells[2].trim());
+					d = Double.parseDouble(cells[3].trim());
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException(where + e.getMessage());
+				}
+				if (from < 0) {
+					throw new IllegalArgumentException(where + "negative time");
+				}
+				if (!(o >= 0) || !(d >= 0)) {
+					throw new IllegalArgumentException(where + "negative weight");
+				}
+				if (starts.isEmpty() || from != starts.get(starts.size() - 1)) {
+					if (!starts.isEmpty() && from < starts.get(starts.size() - 1)) {
+						throw new IllegalArgumentException(where + "buckets are not ordered by time");
+					}
+					starts.add(from);
+					originRates.add(new double[n]);
+					destinationWeights.add(new double[n]);
+				}
+				double[] os = originRates.get(originRates.size() - 1);
+				double[] ds = destinationWeights.get(destinationWeights.size() - 1);
+				String node = cells[1].trim();
+				if (node.equals("*")) {
+					for (int i = 0; i < n; i++) {
+						os[i] += o;
+						ds[i] += d;
+					}
+				} else {
+					int i;
+					try {
+						i = Integer.parseInt(node);
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException(where + e.getMessage());
+					}
+					if (i < 0 || i >= n) {
+						throw new IllegalArgumentException(where + "not a node of the map");
+					}
+					os[i] += o;
+					ds[i] += d;
+				}
+			}
+		}
+		if (starts.isEmpty()) {
+			throw new IllegalArgumentException(file + ": no buckets");
+		}
+		long[] bucketStarts = new long[starts.size()];
+		for (int b = 0; b < bucketStarts.length; b++) {
+			bucketStarts[b] = starts.get(b);
+		}
+		return new SpatioTemporalDemand(rng, n, bucketStarts, originRates.toArray(new double[0][]),
+				destinationWeights.toArray(new double[0][]), endTime);
+	}
+
+	@Override
+	public long nextArrivalTime() {
+		if (nextTime < 0) {
+			nextTime = arrivalAfter(bucketStarts[0]);
+		}
+		return nextTime < endTime ? nextTime : Long.MAX_VALUE;
+	}
+
+	@Override
+	public void next() {
+		long time = nextArrivalTime();
+		origin = origins[bucket].sample(rng);
+		destination = destinations[bucket] == null ? rng.nextInt(nodes) : destinations[bucket].sample(rng);
+		nextTime = arrivalAfter(time);
+	}
+
+	/**
+	 * Time of the first arrival after time, moves bucket to the bucket it
+	 * falls in. The waiting time is exponential with the rate of the
+	 * bucket, if it runs past the end of the bucket the wait starts over at
+	 * the next one, with its rate.
+	 *
+	 * @return Long.MAX_VALUE if nobody arrives anymore
+	 */
+	private long arrivalAfter(long time) {
+		while (bucket < rates.length && time < endTime) {
+			long bucketEnd = bucket + 1 < bucketStarts.length ? bucketStarts[bucket + 1] : Long.MAX_VALUE;
+			if (rates[bucket] > 0) {
+				double wait = -Math.log(1 - rng.nextDouble()) / rates[bucket];
+				if (time + wait < bucketEnd) {
+					return time + (long) wait;
+				}
+			}
+			bucket++;
+			time = bucketEnd;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int origin() {
+		return origin;
+	}
+
+	@Override
+	public int destination() {
+		return destination;
+	}
+
+	@Override
+	public void close() {}
+
+	private static double sum(double[] values) {
+		double sum = 0;
+		for (double v: values) {
+			sum += v;
+		}
+		return sum;
+	}
+}
@@ -20,7 +20,6 @@ import com.github.rinde.rinsim.core.model.pdp.Parcel;
 import com.github.rinde.rinsim.core.model.pdp.Vehicle;
 import com.github.rinde.rinsim.core.model.pdp.VehicleDTO;
 import com.github.rinde.rinsim.core.model.road.RoadModel;
-import com.github.rinde.rinsim.core.model.road.RoadModels;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.geom.Point;
 import com.google.common.base.Optional;
@@ -37,6 +36,11 @@ class Taxi extends Vehicle implements TaxiInterface {
   private long distance;
   private int customersServed;
   private SimpleLogger log;
+  /**
+   * Receives pickups, deliveries and refills.
+   */
+  private final EventJournal journal;
+  private final int taxiID;
   /**
    * Different taxis can have different gas tank sizes.
    */
@@ -45,8 +49,40 @@ class Taxi extends Vehicle implements TaxiInterface {
    * Amount of gas (time) left.
    */
   private int gas;
+  /**
+   * Grid of free taxis this taxi keeps its entry in up to date.
+   */
+  private final FreeTaxiGrid freeTaxis;
+  /**
+   * Nearest taxi base and gas station of every node.
+   */
+  private final FacilityLocator facilities;
+  /**
+   * Last node visited or passed (its n#), facilities and network distances
+   * are looked up from there. A taxi is always on an edge that starts here,
+   * which FreeTaxiGrid relies on, even if it passed several nodes in a tick.
+   */
+  int lastNode;
+  /**
+   * Path to the current destination, planned once per destination.
+   */
+  private final RouteCache route;
+  /**
+   * Cell and slot of this taxi in the free taxi grid, -1 if it isn't free.
+   */
+  int gridCell;
+  int gridSlot;
+  /**
+   * Skips ticks while the simulation is quiescent.
+   */
+  private final Quiescence quiescence;
+  /**
+   * True if the last tick was spent waiting at the base.
+   */
+  private boolean parked;
 
-  Taxi(Point startPosition, int capacity, int tankSize, int gas, SimpleLogger log) {
+  Taxi(Point startPosition, int capacity, int tankSize, int gas, SimpleLogger log, FreeTaxiGrid freeTaxis,
+      FacilityLocator facilities, EventJournal journal, Quiescence quiescence, int taxiID) {
     super(VehicleDTO.builder()
       .capacity(capacity)
       .startPosition(startPosition)
@@ -58,6 +94,16 @@ class Taxi extends Vehicle implements TaxiInterface {
     this.distance = 0; 
     this.customersServed = 0;
     this.log = log;
+    this.journal = journal;
+    this.taxiID = taxiID;
+    this.freeTaxis = freeTaxis;
+    this.facilities = facilities;
+    this.lastNode = facilities.graph.nodeId(startPosition);
+    this.route = new RouteCache(facilities.graph);
+    this.gridCell = -1;
+    this.gridSlot = -1;
+    this.quiescence = quiescence;
+    this.parked = false;
   }
 
   @Override
@@ -68,36 +114,43 @@ class Taxi extends Vehicle implements TaxiInterface {
     final RoadModel rm = getRoadModel();
     final PDPModel pm = getPDPModel();
 
-    if (!time.hasTimeLeft()) {
+    if (!time.hasTimeLeft() || quiescence.isQuiet()) {
       return;
     }
+    parked = false;
 
     Point position = rm.getPosition(this);
+    int node = facilities.graph.nodeId(position);
+    if (node >= 0) {
+      lastNode = node;
+    }
     
     // if the taxi isn't assigned to a customer go to the nearest taxi base
     if (!curr.isPresent()) {
     	
     	//if the taxi is low on gas, go to the nearest gas station
     	if (lowGas()) {
-    		GasStation closestGasStation = (GasStation) RoadModels.findClosestObject(position, rm, GasStation.class);
-    		rm.moveTo(this, closestGasStation, time);
+    		GasStation closestGasStation = facilities.nearestGasStation(lastNode);
+    		moveTo(rm, rm.getPosition(closestGasStation), time);
     		//refill the tank when gas station is reached
     		if (rm.equalPosition(this, closestGasStation)) {
     			gas = tankSize;
-    			System.out.println("refilled");
+    			journal.record(EventJournal.Type.REFILL, time.getTime(), taxiID, 
+    					facilities.graph.nodeId(rm.getPosition(this)), -1);
     		}
     	}
     	// if gas isn't low
     	else {
-	    	TaxiBase closestBase = (TaxiBase) RoadModels.findClosestObject(position, rm, TaxiBase.class);
+	    	TaxiBase closestBase = facilities.nearestBase(lastNode);
 	    	if (!position.equals(rm.getPosition(closestBase))) {
-	    		rm.moveTo(this, closestBase, time);
+	    		moveTo(rm, rm.getPosition(closestBase), time);
 	    	} else {
 	    		//if taxi is at the taxi base -> add one, to counter balance the 
 	    		//gas-- at the end of the method; this is NOT refilling, just
 	    		//keeping the amount of gas the same
 	    		gas++;
 	    		distance--;
+	    		parked = true;
 	    	}
     	}
     }
@@ -110,21 +163,24 @@ class Taxi extends Vehicle implements TaxiInterface {
         curr = Optional.absent();
       } else if (inCargo) {
         // if it is in cargo, go to its destination
-        rm.moveTo(this, curr.get().getDeliveryLocation(), time);
+        moveTo(rm, curr.get().getDeliveryLocation(), time);
         // if we're at the destination
         if (position.equals(curr.get().getDeliveryLocation())) {
           // drop off passengers
           pm.deliver(this, curr.get(), time);
+          journal.record(EventJournal.Type.DELIVERY, time.getTime(), taxiID, lastNode, -1);
           log.logCustomerDelivered(curr.get(), time.getTime());
           curr = Optional.absent();
           customersServed++;
         }
       } else {
         // it is still available, go there as fast as possible
-        rm.moveTo(this, curr.get(), time);
+        moveTo(rm, rm.getPosition(curr.get()), time);
         if (rm.equalPosition(this, curr.get())) {
           // pickup customer
           pm.pickup(this, curr.get(), time);
+          journal.record(EventJournal.Type.PICKUP, time.getTime(), taxiID, 
+              facilities.graph.nodeId(rm.getPosition(this)), -1);
           log.logCustomerPickedUp(curr.get(), time.getTime());
         }
       }
@@ -133,15 +189,39 @@ class Taxi extends Vehicle implements TaxiInterface {
     //reduce amount of gas
     gas--;
     distance++;
+    
+    freeTaxis.update(this, rm.getPosition(this), isFree());
+  }
+  
+  /**
+   * Follows the cached route to destination and keeps lastNode up to date.
+   */
+  private void moveTo(RoadModel rm, Point destination, TimeLapse time) {
+    int passed = route.moveTo(rm, this, destination, time);
+    if (passed >= 0) {
+      lastNode = passed;
+    }
   }
   
   public void assignCustomer(Parcel customer) {
 	  curr = Optional.fromNullable(customer);
+	  freeTaxis.remove(this);
   }
   
+  @Override
   public boolean isFree() {
 	  return !curr.isPresent() && !lowGas();
   }
+  
+  @Override
+  public boolean isRefuelling() {
+	  return !curr.isPresent() && lowGas();
+  }
+  
+  @Override
+  public boolean isParked() {
+	  return parked && !curr.isPresent();
+  }
 
   /**
    * Checks if gas level is below 20%.
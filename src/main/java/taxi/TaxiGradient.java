@@ -15,15 +15,11 @@
  */
 package taxi;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-
 import com.github.rinde.rinsim.core.model.pdp.PDPModel;
 import com.github.rinde.rinsim.core.model.pdp.Parcel;
 import com.github.rinde.rinsim.core.model.pdp.Vehicle;
 import com.github.rinde.rinsim.core.model.pdp.VehicleDTO;
 import com.github.rinde.rinsim.core.model.road.RoadModel;
-import com.github.rinde.rinsim.core.model.road.RoadModels;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.geom.Point;
 import com.google.common.base.Optional;
@@ -40,6 +36,10 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
   private int customersServed;
   private int taxiID;
   SimpleLogger log;
+  /**
+   * Receives pickups, deliveries and refills.
+   */
+  private final EventJournal journal;
   /**
    * Parcel that is currently being delivered.
    */
@@ -57,9 +57,14 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
    */
   private GradientField field;
   /**
-   * Ordered list of preferences for the next node-destination
+   * Strongest point around the last node, reused every time it's updated
    */
-  private GradientFieldPoint approximateDirection;
+  private final GradientFieldPoint approximateDirection;
+  
+  /**
+   * Path to the current destination, planned once per destination.
+   */
+  private final RouteCache route;
   
   /**
    * Current position of the taxi
@@ -68,10 +73,25 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
   
   /**
    * Sometimes rinsim skips a tick or something, so we need
-   * to keep track of which node was last visited and use that as our
-   * approximate current position
+   * to keep track of which node was last visited (its n#) and use that as 
+   * our approximate current position
+   */
+  public int lastNode;  
+  
+  /**
+   * Index of this taxi in the gradient field's fleet snapshot, -1 if it 
+   * wasn't active when the snapshot was taken.
    */
-  public Point lastNode;  
+  int snapshotIndex;
+  
+  /**
+   * Skips ticks while the simulation is quiescent.
+   */
+  private final Quiescence quiescence;
+  /**
+   * True if the last tick was spent waiting at the base.
+   */
+  private boolean parked;
 
   TaxiGradient(
 		  Point startPosition, 
@@ -80,6 +100,8 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
 		  int gas, 
 		  GradientField field, 
 		  SimpleLogger log,
+		  EventJournal journal,
+		  Quiescence quiescence,
 		  int taxiID) {
 	  
     super(VehicleDTO.builder()
@@ -91,13 +113,18 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
     this.tankSize = tankSize;
     this.gas = gas;
     this.field = field;
-    this.approximateDirection = null;
+    this.approximateDirection = new GradientFieldPoint(startPosition, 0);
+    this.route = new RouteCache(field.graph);
     this.currentPosition = startPosition;
-    this.lastNode = startPosition;
+    this.lastNode = field.graph.nodeId(startPosition);
+    this.snapshotIndex = -1;
     this.distance = 0; 
     this.customersServed = 0;
     this.log = log;
+    this.journal = journal;
     this.taxiID = taxiID;
+    this.quiescence = quiescence;
+    this.parked = false;
   }
 
   @Override
@@ -108,46 +135,49 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
     final RoadModel rm = getRoadModel();
     final PDPModel pm = getPDPModel();
 
-    if (!time.hasTimeLeft()) { return; }
+    if (!time.hasTimeLeft() || quiescence.isQuiet()) { return; }
+    parked = false;
 
     //position at this tick
     currentPosition = rm.getPosition(this);
 
     //if taxi is currently at one of the nodes
-    if (field.graph.containsKey(currentPosition.toString())) {
-    	lastNode = currentPosition;
+    int node = field.graph.nodeId(currentPosition);
+    if (node >= 0) {
+    	lastNode = node;
     	//if it's at a node calculate approximate direction based on the field
-    	approximateDirection = field.getApproximateDirection(this);
+    	field.getApproximateDirection(this, approximateDirection);
     	//printMovingFromTo();
-    	//System.out.println(String.format("TAXI %d AT NODE %d", taxiID,field.reverseNodes.get(currentPosition)));
+    	//System.out.println(String.format("TAXI %d AT NODE %d", taxiID, node));
     }
     
     // if the taxi isn't driving a customer
     if (!isDrivingACustomer()) {
     	//if the taxi is low on gas, go to the nearest gas station
     	if (lowGas()) {
-    		GasStation closestGasStation = (GasStation) 
-    				RoadModels.findClosestObject(currentPosition, rm, GasStation.class);
+    		GasStation closestGasStation = field.facilities.nearestGasStation(lastNode);
     		
-    		rm.moveTo(this, closestGasStation, time);
+    		route.moveTo(rm, this, rm.getPosition(closestGasStation), time);
     		//refill the tank when gas station is reached
     		if (rm.equalPosition(this, closestGasStation)) {
     			gas = tankSize;
-    			System.out.println(String.format("TAXI %d REFILLED", taxiID));
+    			journal.record(EventJournal.Type.REFILL, time.getTime(), taxiID, 
+    					field.graph.nodeId(rm.getPosition(this)), -1);
     		}
     	} 
     	
     	// if there are no customers, go to the nearest base
     	else if (approximateDirection.strength <= 0.000000000001) {
-    		TaxiBase closestBase = (TaxiBase) RoadModels.findClosestObject(currentPosition, rm, TaxiBase.class);
+    		TaxiBase closestBase = field.facilities.nearestBase(lastNode);
 	    	if (!currentPosition.equals(rm.getPosition(closestBase))) {
-	    		rm.moveTo(this, closestBase, time);
+	    		route.moveTo(rm, this, rm.getPosition(closestBase), time);
 	    	} else {
 	    		//if taxi is at the taxi base -> add one, to counter balance the 
 	    		//gas-- at the end of the method; this is NOT refilling, just
 	    		//keeping the amount of gas the same
 	    		gas++;
 	    		distance--;
+	    		parked = true;
 	    	}
     	}
     	
@@ -155,17 +185,16 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
     	else 
     	{
     		//follow the gradient field
-	    	rm.moveTo(this, approximateDirection.point, time);
+	    	route.moveTo(rm, this, approximateDirection.point, time);
 	    			
-	        //check if the taxi has reached a customer
-	        ArrayList<Parcel> potentialCusts = 
-	        		new ArrayList<>((HashSet<Parcel>) rm.getObjectsAt(this, Parcel.class));
+	        //check if the taxi has reached a customer (they wait at nodes)
+	        int reached = field.graph.nodeId(rm.getPosition(this));
+	        Customer customer = reached >= 0 
+	        		? field.getCustomerRegistry().firstWaitingAt(reached) : null;
 	        
-	        if (!potentialCusts.isEmpty()) {
+	        if (customer != null) {
 	        	// pickup customer
-	        	Parcel customer = potentialCusts.get(0);
-	        	pickUpCustomer(customer, pm, time);
-	        	System.out.println(String.format("CUSTOMER PICKED UP AT %d BY TAXI %d",field.reverseNodes.get(customer.getPickupLocation()),taxiID));
+	        	pickUpCustomer(customer, pm, time, reached);
 	        }
     	}
     }
@@ -173,7 +202,7 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
     else {
     	Point customerDestination = curr.get().getDeliveryLocation();
     	//go to its destination using the shortest path (not gradient field)
-    	rm.moveTo(this, customerDestination, time);
+    	route.moveTo(rm, this, customerDestination, time);
     	// if we're at the destination
     	if (currentPosition.equals(customerDestination)) {
     		// deliver passengers
@@ -197,15 +226,19 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
 	  return curr.isPresent();
   }
   
-  /**
-   * Pick up customer without printing
-   * 
-   * @param c
-   * @param pm
-   * @param time
-   */
-  private void pickUpCustomer(Parcel c, PDPModel pm, TimeLapse time) {
-	  pickUpCustomer(c, pm, time, true);
+  @Override
+  public boolean isFree() {
+	  return !curr.isPresent() && !lowGas();
+  }
+  
+  @Override
+  public boolean isRefuelling() {
+	  return !curr.isPresent() && lowGas();
+  }
+  
+  @Override
+  public boolean isParked() {
+	  return parked;
   }
   
   /**
@@ -215,37 +248,19 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
    * @param c Customer to be picked up
    * @param pm PDPModel
    * @param time Simulation TimeLapse
-   * @param print true if a message is to be written to stdout, false otherwise
+   * @param node n# of the node where the customer is picked up
    */
-  private void pickUpCustomer(Parcel c, PDPModel pm, TimeLapse time, boolean print) {
+  private void pickUpCustomer(Parcel c, PDPModel pm, TimeLapse time, int node) {
 	  pm.pickup(this, c, time);
-
-	  if (print) {
-		  System.out.println("Customer picked up at " 
-				  + field.reverseNodes.get(currentPosition) 
-				  + " : " 
-				  + currentPosition.toString());
-	  }
+	  journal.record(EventJournal.Type.PICKUP, time.getTime(), taxiID, node, -1);
   	
 	  //THIS CODE IS VERY IMPORTANT FOR GRADIENT FIELD BOOKKEEPING
+	  //(the customer itself is taken out of the field by the pickup event)
 	  curr = Optional.fromNullable(c);
-      field.customersInTransport.put((Customer)curr.get(), true);
-      field.updateCustomerPositions();
       customersServed++;
       log.logCustomerPickedUp(c, time.getTime());
   }
   
-  /**
-   * Deliver customer without printing
-   * 
-   * @param c
-   * @param pm
-   * @param time
-   */
-  private void deliverCustomer(Parcel c, PDPModel pm, TimeLapse time) {
-	  deliverCustomer(c, pm, time, true);
-  }
-  
   /**
    * Delivers the customer and does the bookkeeping necessary to maintain
    * the gradient field.
@@ -253,19 +268,13 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
    * @param c Customer to be delivered
    * @param pm PDPModel
    * @param time Simulation TimeLapse
-   * @param print true if a message is to be written to stdout, false otherwise
    */
-  private void deliverCustomer(Parcel c, PDPModel pm, TimeLapse time, boolean print) {
-	  if (print) {
-		  System.out.println(String.format("CUSTOMER DELIVERED AT %d",
-					field.reverseNodes.get(curr.get().getDeliveryLocation())));
-	  }
-	  
+  private void deliverCustomer(Parcel c, PDPModel pm, TimeLapse time) {
 	  pm.deliver(this, curr.get(), time);
+	  journal.record(EventJournal.Type.DELIVERY, time.getTime(), taxiID, 
+			  field.graph.nodeId(curr.get().getDeliveryLocation()), -1);
 	  
 	  //CODE BELOW IS VERY IMPORTANT FOR GRADIENT FIELD BOOKKEEPING
-	  field.customersInTransport.remove((Customer)curr.get());
-	  field.updateCustomerPositions();
 	  log.logCustomerDelivered(curr.get(), time.getTime());
 	  curr = Optional.absent();
   }
@@ -284,15 +293,16 @@ class TaxiGradient extends Vehicle implements TaxiInterface {
    */
   private void printMovingFromTo() {
 	String strPos;
-	if (field.reverseNodes.containsKey(currentPosition)) {
-		strPos = field.reverseNodes.get(currentPosition).toString();
+	int node = field.graph.nodeId(currentPosition);
+	if (node >= 0) {
+		strPos = Integer.toString(node);
 	} else {
 		strPos = currentPosition.toString();
 	}
 	System.out.println("Moving from " 
 				+ strPos 
 				+ " to " 
-				+ field.reverseNodes.get(approximateDirection.point));
+				+ field.graph.nodeId(approximateDirection.point));
 	System.out.println(" ");
   }
 
@@ -3,4 +3,17 @@ package taxi;
 public interface TaxiInterface {
 	long getDistanceCovered();
 	int getNumberOfCustomersServed();
+	/**
+	 * @return true if the taxi has no customer and enough gas to take one
+	 */
+	boolean isFree();
+	/**
+	 * @return true if the taxi has no customer and is on its way to refill
+	 */
+	boolean isRefuelling();
+	/**
+	 * @return true if the taxi spent its last tick waiting at its base, with
+	 * nothing to do
+	 */
+	boolean isParked();
 }
@@ -0,0 +1,379 @@
+package taxi;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import com.github.rinde.rinsim.core.Simulator;
+import com.github.rinde.rinsim.core.model.pdp.DefaultPDPModel;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.core.model.road.RoadModel;
+import com.github.rinde.rinsim.core.model.road.RoadModelBuilders;
+import com.github.rinde.rinsim.core.model.time.TickListener;
+import com.github.rinde.rinsim.core.model.time.TimeLapse;
+import com.github.rinde.rinsim.geom.Point;
+
+/**
+ * One run of a scenario: the simulator, its agents and everything that is
+ * logged about them. All state belongs to the instance, so any number of
+ * runs can share a JVM, each with its own random generator seeded from
+ * the scenario. Only maps are shared (see MapCache).
+ * <p>
+ * The subclasses set up the taxis of an algorithm, this class adds
+ * facilities and customers and ends the run at the scenario's end time.
+ */
+public abstract class TaxiSimulation {
+
+	private static final int MAX_TANK = 5000;
+	// time in ms
+	private static final long SERVICE_DURATION = 60000;
+	static final int TAXI_CAPACITY = 10;
+	private static final int DEPOT_CAPACITY = 100;
+	private static final int MAX_CAPACITY = 3;
+
+	/**
+	 * Runs started in this JVM, numbers the MBeans of the metrics so that
+	 * runs of the same scenario don't collide
+	 */
+	private static final AtomicInteger RUNS = new AtomicInteger();
+
+	final Scenario scenario;
+	final RoadGraph map;
+	final Simulator simulator;
+	final RandomGenerator rng;
+	final RoadModel roadModel;
+	final SimpleLogger log;
+	final SimulationMetrics metrics;
+	private final String metricsName;
+	final EventJournal journal;
+	/**
+	 * Quiescence of the run, or Quiescence.NEVER if the scenario doesn't 
+	 * skip idle time
+	 */
+	final Quiescence quiescence;
+
+	/**
+	 * New customers, released in the tick in which they arrive
+	 */
+	final DemandSource demand;
+	private long wallClockNanos;
+
+	TaxiSimulation(Scenario scenario, Simulator.Builder builder) {
+		this.scenario = scenario;
+		metricsName = scenario.name + "#" + RUNS.incrementAndGet();
+		map = MapCache.get(scenario.mapFile);
+		simulator = builder.setRandomSeed(scenario.seed)
+				.addModel(RoadModelBuilders.staticGraph(map.getMultiAttributeGraph()))
+				.addModel(DefaultPDPModel.builder()).build();
+		rng = simulator.getRandomGenerator();
+		roadModel = simulator.getModelProvider().getModel(RoadModel.class);
+		demand = openDemand(scenario, map, rng);
+
+		log = createLogger(scenario.spillFile);
+		metrics = new SimulationMetrics(log);
+		// ticks first, to time the whole tick phase
+		simulator.addTickListener(metrics);
+		journal = openJournal(scenario.journalFile, scenario.journalEvents);
+		if (scenario.skipIdleTime) {
+			// before any agent
+			quiescence = new Quiescence(log);
+			simulator.addTickListener(quiescence);
+		} else {
+			quiescence = Quiescence.NEVER;
+		}
+	}
+
+	/**
+	 * Sets up a run of the scenario.
+	 *
+	 * @param scenario
+	 * @param builder simulator builder with any extra models (such as a
+	 * view), the road and PDP models are added to it
+	 * @return
+	 */
+	public static TaxiSimulation create(Scenario scenario, Simulator.Builder builder) {
+		TaxiSimulation s;
+		switch (scenario.algorithm) {
+		case GRADIENT:
+			s = new GradientTaxiSimulation(scenario, builder);
+			break;
+		case RADIO:
+			s = new RadioTaxiSimulation(scenario, builder);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown algorithm: " + scenario.algorithm);
+		}
+		s.populate();
+		return s;
+	}
+
+	public static TaxiSimulation create(Scenario scenario) {
+		return create(scenario, Simulator.builder());
+	}
+
+	private void populate() {
+		// add depots
+		for (int i = 0; i < scenario.depots; i++) {
+			Point position = roadModel.getRandomPosition(rng);
+			TaxiBase base = new TaxiBase(position, DEPOT_CAPACITY);
+			simulator.register(base);
+			facilities().addBase(base, position);
+		}
+
+		// add gas stations
+		for (int i = 0; i < scenario.gasStations; i++) {
+			Point position = roadModel.getRandomPosition(rng);
+			GasStation station = new GasStation(position, DEPOT_CAPACITY);
+			simulator.register(station);
+			facilities().addGasStation(station, position);
+		}
+
+		// add taxis
+		for (int i = 0; i < scenario.taxis; i++) {
+			addTaxi(i);
+		}
+
+		// add customers
+		for (int i = 0; i < scenario.initialCustomers; i++) {
+			Customer cust = initialCustomer(i);
+			log.logCustomerRegistered(cust, 0);
+			journal.record(EventJournal.Type.CUSTOMER_REGISTERED, 0, -1,
+					map.nodeId(cust.getPickupLocation()), map.nodeId(cust.getDeliveryLocation()));
+		}
+
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tick(TimeLapse time) {
+				// stop the simulation if time runs out
+				if (time.getStartTime() > scenario.endTime) {
+					end(time.getStartTime());
+					return;
+				}
+				// nothing happens anymore, stop as if time ran out
+				if (quiescence.isQuiet() && demand.nextArrivalTime() >= endTickTime()) {
+					end(endTickTime());
+					return;
+				}
+				// customers that arrive during this tick
+				while (demand.nextArrivalTime() < time.getEndTime()) {
+					demand.next();
+					Customer cust = createCustomer(map.position(demand.origin()),
+							map.position(demand.destination()));
+					customerCalled(cust, time.getTime());
+					log.logCustomerRegistered(cust, time.getTime());
+					journal.record(EventJournal.Type.CUSTOMER_REGISTERED, time.getTime(), -1,
+							demand.origin(), demand.destination());
+				}
+				dispatch(time.getTime());
+			}
+
+			@Override
+			public void afterTick(TimeLapse timeLapse) {
+			}
+		});
+	}
+
+	/**
+	 * @return start time of the tick in which the run ends
+	 */
+	private long endTickTime() {
+		long step = simulator.getTimeStep();
+		return (scenario.endTime / step + 1) * step;
+	}
+
+	/**
+	 * Nearest facilities the taxis use, facilities are added to it.
+	 */
+	abstract FacilityLocator facilities();
+
+	/**
+	 * Creates a taxi with a random tank size, registers it with the
+	 * simulator and the logger.
+	 */
+	abstract void addTaxi(int taxiID);
+
+	/**
+	 * Creates and registers the i-th customer that is waiting at the start.
+	 */
+	abstract Customer initialCustomer(int i);
+
+	/**
+	 * Registers a new customer with the simulator.
+	 */
+	void customerCalled(Customer customer, long time) {
+		simulator.register(customer);
+	}
+
+	/**
+	 * Called every tick, after new customers are registered.
+	 */
+	void dispatch(long time) {}
+
+	/**
+	 * Stops the simulator and closes the output files.
+	 */
+	void end(long time) {
+		simulator.stop();
+		if (scenario.printStatistics) {
+			log.printAllStatistics();
+		}
+		closeJournal(journal);
+		metrics.close();
+		try {
+			demand.close();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Publishes the metrics of the run (see getMetricsName()) and starts the
+	 * simulator. Without a view, or with a view that isn't asynchronous, 
+	 * the run ends on this thread at the scenario's end time. The metrics 
+	 * are unregistered and the output and demand files closed when the run 
+	 * ends, or when it fails.
+	 */
+	public void run() {
+		try {
+			startMetrics(metrics, getMetricsName(), scenario.metricsFile);
+			long start = System.nanoTime();
+			simulator.start();
+			wallClockNanos = System.nanoTime() - start;
+		} catch (RuntimeException | Error e) {
+			closeAfterFailure(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes what end() would have closed, errors while closing are added
+	 * to failure as suppressed exceptions.
+	 */
+	private void closeAfterFailure(Throwable failure) {
+		metrics.close();
+		try {
+			journal.close();
+		} catch (IOException | RuntimeException e) {
+			failure.addSuppressed(e);
+		}
+		try {
+			demand.close();
+		} catch (IOException | RuntimeException e) {
+			failure.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * @return name of the metrics MBean, the scenario's name followed by
+	 * the number of the run in this JVM (as in gradient#1)
+	 */
+	public String getMetricsName() {
+		return metricsName;
+	}
+
+	public Scenario getScenario() {
+		return scenario;
+	}
+
+	public Simulator getSimulator() {
+		return simulator;
+	}
+
+	public SimpleLogger getLogger() {
+		return log;
+	}
+
+	/**
+	 * @return wall clock time run() took
+	 */
+	public long getWallClockNanos() {
+		return wallClockNanos;
+	}
+
+	int randomTankSize() {
+		return (int) Math.round((MAX_TANK / 2.0) + rng.nextInt((int) (MAX_TANK / 2.0)));
+	}
+
+	Customer createCustomer(Point location, Point destination) {
+		return new Customer(Parcel.builder(location, destination).serviceDuration(SERVICE_DURATION)
+				.neededCapacity(1 + rng.nextInt(MAX_CAPACITY)).buildDTO());
+	}
+
+	// arrivals of the trace file or demand model, or the regular demand if
+	// there is none
+	static DemandSource openDemand(Scenario scenario, RoadGraph map, RandomGenerator rng) {
+		try {
+			if (scenario.traceFile != null) {
+				return new ArrivalTrace(Paths.get(scenario.traceFile), map);
+			}
+			if (scenario.demandModelFile != null) {
+				return SpatioTemporalDemand.load(Paths.get(scenario.demandModelFile), map, rng,
+						scenario.demandEndTime);
+			}
+			return RegularDemand.of(scenario, map, rng);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// distance table of the map, computed on first use
+	static DistanceOracle loadDistances(String name, RoadGraph map) {
+		try {
+			return DistanceOracle.load(name, map);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// logger of the run, spilling to file unless it is null
+	static SimpleLogger createLogger(String spillFile) {
+		if (spillFile == null) {
+			return new SimpleLogger();
+		}
+		try {
+			return new SimpleLogger(Paths.get(spillFile));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// publishes the live metrics over JMX and optionally to file
+	static void startMetrics(SimulationMetrics metrics, String name, String file) {
+		try {
+			metrics.register(name);
+			if (file != null) {
+				metrics.snapshotTo(Paths.get(file));
+			}
+		} catch (JMException | IOException e) {
+			metrics.close();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// journal of the run's events, written in the background, OFF if file
+	// is null
+	static EventJournal openJournal(String file, Set<EventJournal.Type> types) {
+		if (file == null) {
+			return EventJournal.OFF;
+		}
+		try {
+			return EventJournal.open(Paths.get(file), types.toArray(new EventJournal.Type[types.size()]));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static void closeJournal(EventJournal journal) {
+		try {
+			journal.close();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
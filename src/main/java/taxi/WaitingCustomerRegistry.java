@@ -0,0 +1,159 @@
+package taxi;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import com.github.rinde.rinsim.core.model.pdp.PDPModel;
+import com.github.rinde.rinsim.core.model.pdp.PDPModel.PDPModelEventType;
+import com.github.rinde.rinsim.core.model.pdp.PDPModelEvent;
+import com.github.rinde.rinsim.event.Event;
+import com.github.rinde.rinsim.event.Listener;
+
+/**
+ * Customers that are waiting to be picked up, kept up to date from the
+ * events of the PDPModel: a customer is added when it is registered and
+ * removed as soon as a taxi starts picking it up. Pickup coordinates are
+ * stored in dense arrays, a removed customer's slot is filled with the last
+ * one, so both updates are O(1). Customers are also queued per node, in
+ * order of registration, so a taxi can check for customers at its node 
+ * without going through the road model. Every update is passed on to the
+ * gradient field.
+ */
+public class WaitingCustomerRegistry implements Listener {
+
+	private final GradientField field;
+
+	/**
+	 * Waiting customers and their pickup coordinates, only the first size
+	 * entries are valid. Every customer knows its own slot.
+	 */
+	private Customer[] customers;
+	private double[] xs;
+	private double[] ys;
+	private int size;
+
+	/**
+	 * Waiting customers per node (n#), oldest first. A node's queue is 
+	 * created when the first customer appears there.
+	 */
+	private final ArrayDeque<Customer>[] buckets;
+	
+	/**
+	 * Incremented on every change.
+	 */
+	private long version;
+
+	@SuppressWarnings("unchecked")
+	WaitingCustomerRegistry(GradientField field) {
+		this.field = field;
+		this.buckets = (ArrayDeque<Customer>[]) new ArrayDeque<?>[field.graph.nodeCount()];
+		this.customers = new Customer[16];
+		this.xs = new double[16];
+		this.ys = new double[16];
+		this.size = 0;
+	}
+
+	/**
+	 * Starts following the customers of pdpModel. Has to be called before
+	 * any customer is registered.
+	 *
+	 * @param pdpModel
+	 */
+	public void listenTo(PDPModel pdpModel) {
+		pdpModel.getEventAPI().addListener(this,
+				PDPModelEventType.NEW_PARCEL, PDPModelEventType.START_PICKUP);
+	}
+
+	@Override
+	public void handleEvent(Event e) {
+		PDPModelEvent event = (PDPModelEvent) e;
+		if (!(event.parcel instanceof Customer)) { return; }
+		Customer c = (Customer) event.parcel;
+
+		if (event.getEventType() == PDPModelEventType.NEW_PARCEL) {
+			add(c);
+			field.customerWaiting(c);
+		} else if (c.registrySlot >= 0) {
+			remove(c);
+			field.customerPickedUp(c);
+		}
+	}
+
+	private void add(Customer c) {
+		if (size == customers.length) {
+			customers = Arrays.copyOf(customers, size * 2);
+			xs = Arrays.copyOf(xs, size * 2);
+			ys = Arrays.copyOf(ys, size * 2);
+		}
+		c.registrySlot = size;
+		customers[size] = c;
+		xs[size] = c.getPickupLocation().x;
+		ys[size] = c.getPickupLocation().y;
+		size++;
+		version++;
+		
+		int node = field.graph.nodeId(c.getPickupLocation());
+		if (node >= 0) {
+			if (buckets[node] == null) {
+				buckets[node] = new ArrayDeque<>(4);
+			}
+			buckets[node].addLast(c);
+		}
+	}
+
+	private void remove(Customer c) {
+		int slot = c.registrySlot;
+		int last = --size;
+		Customer moved = customers[last];
+		customers[slot] = moved;
+		xs[slot] = xs[last];
+		ys[slot] = ys[last];
+		moved.registrySlot = slot;
+		customers[last] = null;
+		c.registrySlot = -1;
+		version++;
+		
+		int node = field.graph.nodeId(c.getPickupLocation());
+		if (node >= 0) {
+			// usually the oldest customer is picked up first
+			if (buckets[node].peekFirst() == c) {
+				buckets[node].pollFirst();
+			} else {
+				buckets[node].remove(c);
+			}
+		}
+	}
+	
+	/**
+	 * @param node n# of a node
+	 * @return customer that has been waiting the longest at node, null if
+	 * there are none
+	 */
+	public Customer firstWaitingAt(int node) {
+		ArrayDeque<Customer> bucket = buckets[node];
+		return bucket == null ? null : bucket.peekFirst();
+	}
+
+	/**
+	 * @return number of waiting customers
+	 */
+	public int size() {
+		return size;
+	}
+
+	public long version() {
+		return version;
+	}
+
+	public Customer customer(int i) {
+		return customers[i];
+	}
+
+	public double x(int i) {
+		return xs[i];
+	}
+
+	public double y(int i) {
+		return ys[i];
+	}
+}
@@ -0,0 +1,76 @@
+package taxi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Test;
+
+public class AliasTableTest {
+
+	@Test
+	public void drawsInProportionToWeights() {
+		double[] weights = { 1, 0, 3, 0.5, 10, 0, 2.5 };
+		double total = 17;
+		AliasTable table = new AliasTable(weights);
+		assertEquals(weights.length, table.size());
+
+		RandomGenerator rng = new MersenneTwister(42);
+		int draws = 1000000;
+		int[] counts = new int[weights.length];
+		for (int i = 0; i < draws; i++) {
+			counts[table.sample(rng)]++;
+		}
+		for (int i = 0; i < weights.length; i++) {
+			double p = weights[i] / total;
+			// five standard deviations of a binomial count
+			double tolerance = 5 * Math.sqrt(draws * p * (1 - p));
+			assertEquals("index " + i, draws * p, counts[i], tolerance);
+		}
+	}
+
+	@Test
+	public void neverDrawsZeroWeights() {
+		double[] weights = new double[1000];
+		weights[17] = 1e-300;
+		weights[999] = 1e-300;
+		AliasTable table = new AliasTable(weights);
+		RandomGenerator rng = new MersenneTwister(1);
+		for (int i = 0; i < 100000; i++) {
+			int index = table.sample(rng);
+			assertTrue(String.valueOf(index), index == 17 || index == 999);
+		}
+	}
+
+	@Test
+	public void drawsTheOnlyWeight() {
+		AliasTable table = new AliasTable(new double[] { 7 });
+		assertEquals(0, table.sample(new MersenneTwister(3)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNegativeWeight() {
+		new AliasTable(new double[] { 1, -1 });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNaN() {
+		new AliasTable(new double[] { 1, Double.NaN });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInfiniteWeight() {
+		new AliasTable(new double[] { 1, Double.POSITIVE_INFINITY });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAllZero() {
+		new AliasTable(new double[3]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNoWeights() {
+		new AliasTable(new double[0]);
+	}
+}
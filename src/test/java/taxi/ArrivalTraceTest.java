@@ -0,0 +1,118 @@
+package taxi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArrivalTraceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private RoadGraph map;
+
+	@Before
+	public void setUp() throws IOException {
+		map = DotMapReader.read("maps/test.dot");
+	}
+
+	private Path trace(String... lines) throws IOException {
+		Path file = folder.newFile().toPath();
+		StringBuilder text = new StringBuilder();
+		for (String line: lines) {
+			text.append(line).append('\n');
+		}
+		Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	@Test
+	public void readsArrivalsInOrder() throws IOException {
+		Path file = trace(ArrivalTrace.HEADER, "# comment", "0,1,2", "", "500, 3 ,4", "500,5,0");
+		try (ArrivalTrace t = new ArrivalTrace(file, map)) {
+			assertEquals(0, t.nextArrivalTime());
+			t.next();
+			assertEquals(1, t.origin());
+			assertEquals(2, t.destination());
+			assertEquals(500, t.nextArrivalTime());
+			t.next();
+			assertEquals(3, t.origin());
+			assertEquals(4, t.destination());
+			assertEquals(500, t.nextArrivalTime());
+			t.next();
+			assertEquals(5, t.origin());
+			assertEquals(0, t.destination());
+			assertEquals(Long.MAX_VALUE, t.nextArrivalTime());
+		}
+	}
+
+	@Test
+	public void endsAtOnceWithoutArrivals() throws IOException {
+		try (ArrivalTrace t = new ArrivalTrace(trace(ArrivalTrace.HEADER), map)) {
+			assertEquals(Long.MAX_VALUE, t.nextArrivalTime());
+		}
+	}
+
+	@Test
+	public void rejectsInvalidLines() throws IOException {
+		assertInvalid(":2:", "0,1,2", ArrivalTrace.HEADER);
+		assertInvalid(":1:", "time,origin");
+		assertInvalid(":1:", "0,1");
+		assertInvalid(":1:", "0,x,2");
+		assertInvalid(":1:", "-1,1,2");
+		assertInvalid(":1:", "0,1," + map.nodeCount());
+		assertInvalid(":1:", "0,-1,2");
+		assertInvalid(":3:", "100,1,2", "", "99,1,2");
+	}
+
+	/**
+	 * The line can be the first arrival, read when the trace is opened, or a
+	 * later one, read by next().
+	 */
+	private void assertInvalid(String where, String... lines) throws IOException {
+		Path file = trace(lines);
+		try (ArrivalTrace t = new ArrivalTrace(file, map)) {
+			while (t.nextArrivalTime() != Long.MAX_VALUE) {
+				t.next();
+			}
+			fail("accepted " + lines[lines.length - 1]);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(file + where));
+		}
+	}
+
+	@Test
+	public void replaysWrittenDemand() throws IOException {
+		long endTime = 10 * 60 * 60 * 1000;
+		Path file = folder.newFile().toPath();
+		long arrivals;
+		try (DemandSource demand = new RegularDemand(map, new MersenneTwister(5), 60000, endTime, 3)) {
+			arrivals = ArrivalTrace.write(demand, file);
+		}
+		assertTrue(arrivals > 0);
+
+		try (DemandSource expected = new RegularDemand(map, new MersenneTwister(5), 60000, endTime, 3);
+				ArrivalTrace actual = new ArrivalTrace(file, map)) {
+			for (long i = 0; i < arrivals; i++) {
+				assertEquals(expected.nextArrivalTime(), actual.nextArrivalTime());
+				expected.next();
+				actual.next();
+				assertEquals(expected.origin(), actual.origin());
+				assertEquals(expected.destination(), actual.destination());
+			}
+			assertEquals(Long.MAX_VALUE, expected.nextArrivalTime());
+			assertEquals(Long.MAX_VALUE, actual.nextArrivalTime());
+		}
+	}
+}
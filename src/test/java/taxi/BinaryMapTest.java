@@ -0,0 +1,86 @@
+package taxi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinaryMapTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void roundTripsEveryMap() throws IOException {
+		File[] maps = new File("maps").listFiles();
+		int count = 0;
+		for (File dot: maps) {
+			if (!dot.getName().endsWith(".dot")) { continue; }
+			RoadGraph expected = DotMapReader.read(dot.getPath());
+			Path compiled = folder.newFile(dot.getName() + BinaryMap.EXTENSION).toPath();
+			BinaryMap.write(expected, compiled);
+			assertSameGraph(dot.getName(), expected, BinaryMap.read(compiled));
+			assertSameGraph(dot.getName(), expected, BinaryMap.load(compiled.toString()));
+			count++;
+		}
+		assertTrue(count > 0);
+	}
+
+	/**
+	 * Bit for bit, NaN speeds included
+	 */
+	private static void assertSameGraph(String name, RoadGraph expected, RoadGraph actual) {
+		assertEquals(name, expected.nodeCount(), actual.nodeCount());
+		assertEquals(name, expected.edgeCount(), actual.edgeCount());
+		for (int i = 0; i < expected.nodeCount(); i++) {
+			assertEquals(name, bits(expected.x(i)), bits(actual.x(i)));
+			assertEquals(name, bits(expected.y(i)), bits(actual.y(i)));
+			assertEquals(name, expected.firstEdge(i), actual.firstEdge(i));
+		}
+		for (int e = 0; e < expected.edgeCount(); e++) {
+			assertEquals(name, expected.target(e), actual.target(e));
+			assertEquals(name, bits(expected.length(e)), bits(actual.length(e)));
+			assertEquals(name, bits(expected.maxSpeed(e)), bits(actual.maxSpeed(e)));
+		}
+	}
+
+	private static long bits(double d) {
+		return Double.doubleToLongBits(d);
+	}
+
+	@Test
+	public void rejectsTruncatedFile() throws IOException {
+		Path compiled = folder.newFile("test.bmap").toPath();
+		BinaryMap.write(DotMapReader.read("maps/test.dot"), compiled);
+		try (RandomAccessFile file = new RandomAccessFile(compiled.toFile(), "rw")) {
+			file.setLength(file.length() - 4);
+		}
+		assertReadFails(compiled);
+	}
+
+	@Test
+	public void rejectsOtherFiles() throws IOException {
+		Path dot = new File("maps/test.dot").toPath();
+		assertReadFails(dot);
+
+		Path empty = folder.newFile("empty.bmap").toPath();
+		assertReadFails(empty);
+	}
+
+	private static void assertReadFails(Path file) {
+		try {
+			BinaryMap.read(file);
+			fail("read " + file);
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(file.toString()));
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package taxi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class DotMapReaderTest {
+
+	private static RoadGraph read(String dot) throws IOException {
+		return DotMapReader.read(new StringReader(dot), "test");
+	}
+
+	@Test
+	public void readsNodesAndEdgesInAnyOrder() throws IOException {
+		RoadGraph g = read("digraph mapgraph {\n"
+				+ "n0 -> n1[d='5.0', s=\"13.9\"]\n"
+				+ "n1[p='3.0,4.0']\n"
+				+ "n1 -> n0\n"
+				+ "n0[p=\"0.0,0.0\"]\n"
+				+ "n1 -> n1[d=\"1.0\"]\n"
+				+ "n0 -> n0\n"
+				+ "}\n");
+		assertEquals(2, g.nodeCount());
+		assertEquals(3, g.x(1), 0);
+		assertEquals(4, g.y(1), 0);
+		// self cycles are dropped
+		assertEquals(2, g.edgeCount());
+		int e = g.firstEdge(0);
+		assertEquals(1, g.target(e));
+		assertEquals(5, g.length(e), 0);
+		assertEquals(13.9, g.maxSpeed(e), 0);
+		e = g.firstEdge(1);
+		assertEquals(0, g.target(e));
+		// no length: straight line
+		assertEquals(5, g.length(e), 0);
+		assertTrue(Double.isNaN(g.maxSpeed(e)));
+	}
+
+	@Test
+	public void reportsTheLineOfAnError() {
+		assertError("digraph g {\nn0[p=\"0,0\"]\nn0 -> x1\n}", "test:3:");
+		assertError("digraph g {\nn0[q=\"0,0\"]\n}", "test:2:");
+		assertError("digraph g {\n\nn0[p=0]\n}", "test:3:");
+		assertError("digraph g {\nn0[p=\"0,0\"]\n", "test:3:");
+		assertError("digraph g\nn0\n", "test:2:");
+		assertError("digraph g {\nn0[p=\"0,x\"]\n}", "test:2:");
+		assertError("digraph g {\nn0[p=\"0;0\"]\n}", "test:2:");
+		assertError("digraph g {\nn0[p=\"0,0\"]\nn1[p=\"1,0\"]\nn0 -> n1[d=\"1m\"]\n}", "test:4:");
+		assertError("digraph g {\nn0[p=\"0,0\"]\n\nn0[p=\"1,0\"]\n}", "test:4:");
+	}
+
+	@Test
+	public void reportsTheFirstEdgeToAnUndeclaredNode() {
+		assertError("digraph g {\nn0[p=\"0,0\"]\nn1[p=\"1,0\"]\nn0 -> n1\n"
+				+ "n1 -> n2\nn2 -> n0\n}", "test:5: node n2");
+		// declared later is fine
+		try {
+			assertEquals(2, read("digraph g {\nn0 -> n1\nn1[p=\"1,0\"]\nn0[p=\"0,0\"]\n}").nodeCount());
+		} catch (IOException e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void rejectsMissingNodeIds() {
+		assertError("digraph g {\nn0[p=\"0,0\"]\nn2[p=\"1,0\"]\n}", "test: node n1");
+	}
+
+	private static void assertError(String dot, String prefix) {
+		try {
+			read(dot);
+			fail("no error in " + dot);
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(prefix));
+		}
+	}
+
+	/**
+	 * Compares with a plain regular expression scan of the file.
+	 */
+	@Test
+	public void readsTestMap() throws IOException {
+		String file = "maps/test.dot";
+		RoadGraph g = DotMapReader.read(file);
+		String dot = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.ISO_8859_1);
+
+		Matcher nodes = Pattern.compile("n(\\d+)\\[p=\"([^,]+),([^\"]+)\"\\]").matcher(dot);
+		int nodeCount = 0;
+		while (nodes.find()) {
+			int n = Integer.parseInt(nodes.group(1));
+			assertEquals(Double.parseDouble(nodes.group(2)), g.x(n), 0);
+			assertEquals(Double.parseDouble(nodes.group(3)), g.y(n), 0);
+			nodeCount++;
+		}
+		assertEquals(nodeCount, g.nodeCount());
+
+		Matcher edges = Pattern.compile("n(\\d+) -> n(\\d+)\\[d=\"([^\"]+)\"\\]").matcher(dot);
+		int edgeCount = 0;
+		while (edges.find()) {
+			int from = Integer.parseInt(edges.group(1));
+			int to = Integer.parseInt(edges.group(2));
+			double length = Double.parseDouble(edges.group(3));
+			boolean found = false;
+			for (int e = g.firstEdge(from); e < g.endEdge(from); e++) {
+				found |= g.target(e) == to && g.length(e) == length;
+			}
+			assertTrue(from + " -> " + to, found);
+			edgeCount++;
+		}
+		assertTrue(edgeCount > 0);
+		assertEquals(edgeCount, g.edgeCount());
+	}
+}
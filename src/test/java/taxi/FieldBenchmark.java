@@ -0,0 +1,257 @@
+package taxi;
+
+import java.util.Locale;
+import java.util.Random;
+
+import com.github.rinde.rinsim.core.Simulator;
+import com.github.rinde.rinsim.core.model.pdp.DefaultPDPModel;
+import com.github.rinde.rinsim.core.model.pdp.PDPModel;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.core.model.road.RoadModel;
+import com.github.rinde.rinsim.core.model.road.RoadModelBuilders;
+import com.github.rinde.rinsim.geom.Point;
+
+/**
+ * Compares the modes of GradientField on a square grid of streets with a
+ * large, clustered customer population. Every mode gets its own field on
+ * the same simulator, so all of them see the same customers and taxis, and
+ * every taxi asks each field for its direction through
+ * getApproximateDirection, like TaxiGradient does.
+ * <p>
+ * For EXACT, INCREMENTAL and APPROXIMATE (at several opening angles) it
+ * reports the time per decision, how often the chosen direction differs
+ * from EXACT's and the relative error of the strength of that direction.
+ * It also reports the time INCREMENTAL needs to add a customer (a pass over
+ * all nodes) and how many decisions per customer it takes before
+ * INCREMENTAL is the faster of the two.
+ * <p>
+ * Arguments (all optional): number of customers, number of active taxis,
+ * signalDrop, taxiVSCustomer.
+ */
+public final class FieldBenchmark {
+
+	private static final int SIDE = 401;
+	private static final double EDGE_LENGTH = 50;
+	private static final int HOTSPOTS = 5;
+	private static final int ROUNDS = 10;
+	private static final int RUNS = 3;
+	private static final double[] OPENING_ANGLES = {0.25, 0.5, 0.75, 1.0};
+
+	private FieldBenchmark() {}
+
+	public static void main(String[] args) {
+		int customers = args.length >= 1 ? Integer.parseInt(args[0]) : 5000;
+		int taxis = args.length >= 2 ? Integer.parseInt(args[1]) : 200;
+		double signalDrop = args.length >= 3 ? Double.parseDouble(args[2]) : 2;
+		double taxiVSCustomer = args.length >= 4 ? Double.parseDouble(args[3]) : 0.5;
+
+		RoadGraph map = grid();
+		Point[] pickups = pickups(map, customers, new Random(123));
+
+		int modes = 2 + OPENING_ANGLES.length;
+		Simulator simulator = simulator(map);
+		GradientField[] fields = new GradientField[modes];
+		String[] names = new String[modes];
+		fields[0] = field(simulator, map, signalDrop, taxiVSCustomer, GradientField.Mode.EXACT, 0);
+		names[0] = "exact";
+		fields[1] = field(simulator, map, signalDrop, taxiVSCustomer, GradientField.Mode.INCREMENTAL, 0);
+		names[1] = "incremental";
+		for (int i = 0; i < OPENING_ANGLES.length; i++) {
+			fields[2 + i] = field(simulator, map, signalDrop, taxiVSCustomer, GradientField.Mode.APPROXIMATE,
+					OPENING_ANGLES[i]);
+			names[2 + i] = String.format(Locale.ROOT, "theta %.2f", OPENING_ANGLES[i]);
+		}
+		register(simulator, pickups);
+		TaxiGradient[] fleet = register(simulator, map, fields[0], taxis, new Random(456));
+		for (GradientField field: fields) {
+			field.getFleetSnapshot().tick(null);
+		}
+
+		System.out.println(String.format(Locale.ROOT,
+				"%d nodes, %d customers, %d taxis, signalDrop %.2f, taxiVSCustomer %.2f",
+				map.nodeCount(), customers, taxis, signalDrop, taxiVSCustomer));
+
+		GradientFieldPoint[][] directions = new GradientFieldPoint[modes][fleet.length];
+		double[] perDecision = new double[modes];
+		for (int m = 0; m < modes; m++) {
+			for (int t = 0; t < fleet.length; t++) {
+				directions[m][t] = new GradientFieldPoint(null, 0);
+			}
+			perDecision[m] = decide(fields[m], fleet, directions[m]);
+		}
+
+		for (int m = 0; m < modes; m++) {
+			int differentDirections = 0;
+			int compared = 0;
+			double maxError = 0;
+			double sumError = 0;
+			for (int t = 0; t < fleet.length; t++) {
+				GradientFieldPoint exact = directions[0][t];
+				GradientFieldPoint other = directions[m][t];
+				if (!exact.point.equals(other.point)) {
+					differentDirections++;
+				}
+				// next to a customer the strength is infinite, or not a number
+				// in EXACT mode if a taxi is there too
+				if (isFinite(exact.strength) && isFinite(other.strength)) {
+					double error = exact.strength == other.strength ? 0
+							: Math.abs(other.strength - exact.strength) / Math.abs(exact.strength);
+					maxError = Math.max(maxError, error);
+					sumError += error;
+					compared++;
+				}
+			}
+			System.out.println(String.format(Locale.ROOT,
+					"%-12s %10.0f ns/decision, different direction %.2f%%, "
+					+ "relative error mean %.2e max %.2e (%d taxis next to a customer)",
+					names[m], perDecision[m], 100.0 * differentDirections / fleet.length,
+					compared == 0 ? 0 : sumError / compared, maxError, fleet.length - compared));
+		}
+
+		double eventTime = customerEventTime(map, pickups, signalDrop, taxiVSCustomer);
+		System.out.println(String.format(Locale.ROOT, "incremental  %10.0f ns per customer event", eventTime));
+		if (perDecision[1] < perDecision[0]) {
+			// every customer is added and picked up once
+			System.out.println(String.format(Locale.ROOT,
+					"incremental is faster than exact above %.1f decisions per customer",
+					2 * eventTime / (perDecision[0] - perDecision[1])));
+		} else {
+			System.out.println("incremental is never faster than exact");
+		}
+	}
+
+	private static boolean isFinite(double d) {
+		return !Double.isNaN(d) && !Double.isInfinite(d);
+	}
+
+	/**
+	 * Two way streets EDGE_LENGTH long between the nodes of a SIDE x SIDE
+	 * grid.
+	 */
+	private static RoadGraph grid() {
+		RoadGraph.Builder b = new RoadGraph.Builder();
+		for (int i = 0; i < SIDE * SIDE; i++) {
+			b.addNode(i, (i % SIDE) * EDGE_LENGTH, (i / SIDE) * EDGE_LENGTH);
+		}
+		for (int i = 0; i < SIDE * SIDE; i++) {
+			if (i % SIDE < SIDE - 1) {
+				b.addEdge(i, i + 1).addEdge(i + 1, i);
+			}
+			if (i / SIDE < SIDE - 1) {
+				b.addEdge(i, i + SIDE).addEdge(i + SIDE, i);
+			}
+		}
+		return b.build();
+	}
+
+	/**
+	 * Half of the customers around a few hotspots, the rest uniform, all at
+	 * the node nearest to where they were drawn.
+	 */
+	private static Point[] pickups(RoadGraph map, int customers, Random random) {
+		double size = (SIDE - 1) * EDGE_LENGTH;
+		double[] hotspotX = new double[HOTSPOTS];
+		double[] hotspotY = new double[HOTSPOTS];
+		for (int i = 0; i < HOTSPOTS; i++) {
+			hotspotX[i] = random.nextDouble() * size;
+			hotspotY[i] = random.nextDouble() * size;
+		}
+		Point[] pickups = new Point[customers];
+		for (int i = 0; i < customers; i++) {
+			double x;
+			double y;
+			if (i % 2 == 0) {
+				int h = random.nextInt(HOTSPOTS);
+				x = hotspotX[h] + random.nextGaussian() * 500;
+				y = hotspotY[h] + random.nextGaussian() * 500;
+			} else {
+				x = random.nextDouble() * size;
+				y = random.nextDouble() * size;
+			}
+			int column = (int) Math.round(Math.min(Math.max(x / EDGE_LENGTH, 0), SIDE - 1));
+			int row = (int) Math.round(Math.min(Math.max(y / EDGE_LENGTH, 0), SIDE - 1));
+			pickups[i] = map.position(row * SIDE + column);
+		}
+		return pickups;
+	}
+
+	private static Simulator simulator(RoadGraph map) {
+		return Simulator.builder()
+				.setRandomSeed(123)
+				.addModel(RoadModelBuilders.staticGraph(map.getMultiAttributeGraph()))
+				.addModel(DefaultPDPModel.builder()).build();
+	}
+
+	/**
+	 * A field that follows the customers of simulator, has to be made before
+	 * they are registered.
+	 */
+	private static GradientField field(Simulator simulator, RoadGraph map, double signalDrop,
+			double taxiVSCustomer, GradientField.Mode mode, double openingAngle) {
+		GradientField field = new GradientField(simulator.getModelProvider().getModel(RoadModel.class), map,
+				simulator.getRandomGenerator(), signalDrop, taxiVSCustomer, mode, openingAngle);
+		field.getCustomerRegistry().listenTo(simulator.getModelProvider().getModel(PDPModel.class));
+		return field;
+	}
+
+	private static void register(Simulator simulator, Point[] pickups) {
+		for (Point pickup: pickups) {
+			simulator.register(new Customer(Parcel.builder(pickup, pickup).neededCapacity(1).buildDTO()));
+		}
+	}
+
+	private static TaxiGradient[] register(Simulator simulator, RoadGraph map, GradientField field,
+			int taxis, Random random) {
+		SimpleLogger log = new SimpleLogger();
+		TaxiGradient[] fleet = new TaxiGradient[taxis];
+		for (int i = 0; i < taxis; i++) {
+			fleet[i] = new TaxiGradient(map.position(random.nextInt(map.nodeCount())), 1, 1, 1, field, log,
+					EventJournal.OFF, Quiescence.NEVER, i);
+			simulator.register(fleet[i]);
+		}
+		return fleet;
+	}
+
+	/**
+	 * Lets every taxi ask field for its direction, ROUNDS times per run.
+	 *
+	 * @return ns per decision of the last run
+	 */
+	private static double decide(GradientField field, TaxiGradient[] fleet, GradientFieldPoint[] results) {
+		double time = 0;
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			for (int round = 0; round < ROUNDS; round++) {
+				for (int t = 0; t < fleet.length; t++) {
+					field.getApproximateDirection(fleet[t], results[t]);
+				}
+			}
+			time = (System.nanoTime() - start) / ((double) ROUNDS * fleet.length);
+		}
+		return time;
+	}
+
+	/**
+	 * Time it takes to register a customer with an INCREMENTAL field, minus
+	 * the time it takes with an EXACT field, on fresh simulators.
+	 *
+	 * @return ns per customer of the last run
+	 */
+	private static double customerEventTime(RoadGraph map, Point[] pickups, double signalDrop,
+			double taxiVSCustomer) {
+		double time = 0;
+		for (int run = 0; run < RUNS; run++) {
+			long[] elapsed = new long[2];
+			GradientField.Mode[] modes = {GradientField.Mode.EXACT, GradientField.Mode.INCREMENTAL};
+			for (int m = 0; m < modes.length; m++) {
+				Simulator simulator = simulator(map);
+				field(simulator, map, signalDrop, taxiVSCustomer, modes[m], 0);
+				long start = System.nanoTime();
+				register(simulator, pickups);
+				elapsed[m] = System.nanoTime() - start;
+			}
+			time = (elapsed[1] - elapsed[0]) / (double) pickups.length;
+		}
+		return time;
+	}
+}
@@ -0,0 +1,153 @@
+package taxi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.rinde.rinsim.geom.Point;
+
+public class FreeTaxiGridTest {
+
+	private static final int SIDE = 20;
+	private static final double SPACING = 1000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random rng = new Random(3);
+	private RoadGraph map;
+	private FreeTaxiGrid grid;
+	private FacilityLocator facilities;
+	private final List<Taxi> taxis = new ArrayList<>();
+	private final List<Point> positions = new ArrayList<>();
+
+	/**
+	 * A square grid of streets whose lengths are about a hundredth of the
+	 * distance between their ends, so routes and straight lines aren't in the
+	 * same unit.
+	 */
+	@Before
+	public void setUp() {
+		RoadGraph.Builder b = new RoadGraph.Builder();
+		for (int i = 0; i < SIDE * SIDE; i++) {
+			b.addNode(i, (i % SIDE) * SPACING, (i / SIDE) * SPACING);
+		}
+		for (int i = 0; i < SIDE * SIDE; i++) {
+			if (i % SIDE < SIDE - 1) {
+				street(b, i, i + 1);
+			}
+			if (i / SIDE < SIDE - 1) {
+				street(b, i, i + SIDE);
+			}
+		}
+		map = b.build();
+		grid = new FreeTaxiGrid(map);
+		facilities = new FacilityLocator(map);
+	}
+
+	private void street(RoadGraph.Builder b, int from, int to) {
+		double length = 5 + rng.nextInt(20);
+		b.addEdge(from, to, length, Double.NaN);
+		b.addEdge(to, from, length, Double.NaN);
+	}
+
+	/**
+	 * Puts a free taxi at a random node, or on its way to the next node to
+	 * the east.
+	 */
+	private Taxi addTaxi() {
+		int node = rng.nextInt(map.nodeCount());
+		Point position = map.position(node);
+		Taxi t = new Taxi(position, 1, 1, 1, null, grid, facilities, EventJournal.OFF, Quiescence.NEVER,
+				taxis.size());
+		if (node % SIDE < SIDE - 1 && rng.nextBoolean()) {
+			position = new Point(position.x + 0.4 * SPACING, position.y);
+		}
+		grid.update(t, position, true);
+		taxis.add(t);
+		positions.add(position);
+		return t;
+	}
+
+	@Test
+	public void keepsOnlyFreeTaxis() {
+		assertNull(grid.findNearest(map.position(0), Double.MAX_VALUE));
+		Taxi a = addTaxi();
+		Taxi b = addTaxi();
+		assertEquals(2, grid.size());
+
+		grid.update(a, map.position(0), false);
+		assertEquals(1, grid.size());
+		assertSame(b, grid.findNearest(map.position(0), Double.MAX_VALUE));
+
+		// moving a taxi doesn't add it twice
+		grid.update(b, map.position(1), true);
+		grid.update(b, map.position(map.nodeCount() - 1), true);
+		assertEquals(1, grid.size());
+		assertSame(b, grid.findNearest(map.position(0), Double.MAX_VALUE));
+
+		grid.remove(b);
+		grid.remove(b);
+		assertEquals(0, grid.size());
+		assertNull(grid.findNearest(map.position(0), Double.MAX_VALUE));
+	}
+
+	@Test
+	public void findsNearestInStraightLine() {
+		for (int i = 0; i < 30; i++) {
+			addTaxi();
+		}
+		for (int q = 0; q < 2000; q++) {
+			Point p = new Point(rng.nextDouble() * SIDE * SPACING, rng.nextDouble() * SIDE * SPACING);
+			double radius = rng.nextBoolean() ? Double.MAX_VALUE : rng.nextInt(8000);
+
+			double expected = Double.POSITIVE_INFINITY;
+			for (Point position: positions) {
+				double d = Point.distance(position, p);
+				if (d <= radius) {
+					expected = Math.min(expected, d);
+				}
+			}
+			Taxi found = grid.findNearest(p, radius);
+			assertEquals(expected, found == null ? Double.POSITIVE_INFINITY
+					: Point.distance(positions.get(taxis.indexOf(found)), p), 0);
+		}
+	}
+
+	@Test
+	public void findsNearestByRoute() throws IOException {
+		Path file = folder.newFile("grid.dist").toPath();
+		DistanceOracle.write(map, file);
+		DistanceOracle distances = DistanceOracle.read(file, map);
+
+		for (int i = 0; i < 30; i++) {
+			addTaxi();
+		}
+		for (int q = 0; q < 2000; q++) {
+			int node = rng.nextInt(map.nodeCount());
+			Point p = map.position(node);
+			double radius = rng.nextBoolean() ? Double.MAX_VALUE : rng.nextInt(8000);
+
+			double expected = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < taxis.size(); i++) {
+				if (Point.distance(positions.get(i), p) <= radius) {
+					expected = Math.min(expected, distances.distance(taxis.get(i).lastNode, node));
+				}
+			}
+			Taxi found = grid.findNearest(p, radius, distances, node);
+			assertEquals(expected, found == null ? Double.POSITIVE_INFINITY
+					: distances.distance(found.lastNode, node), 0);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package taxi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HungarianAlgorithmTest {
+
+	@Test
+	public void solvesSmallSquare() {
+		double[] cost = {
+				4, 1, 3,
+				2, 0, 5,
+				3, 2, 2 };
+		assertArrayEquals(new int[] { 1, 0, 2 }, HungarianAlgorithm.solve(cost, 3, 3));
+	}
+
+	@Test
+	public void matchesBruteForce() {
+		Random rng = new Random(123);
+		for (int round = 0; round < 500; round++) {
+			int n = 1 + rng.nextInt(5);
+			int m = n + rng.nextInt(3);
+			// a longer buffer, like a reused one
+			double[] cost = new double[n * m + rng.nextInt(10)];
+			Arrays.fill(cost, -1e9);
+			for (int k = 0; k < n * m; k++) {
+				// few distinct values, so there are ties
+				cost[k] = rng.nextInt(4) == 0 ? rng.nextInt(3) : rng.nextDouble() * 100;
+			}
+
+			int[] columns = HungarianAlgorithm.solve(cost, n, m);
+			assertEquals(n, columns.length);
+			boolean[] used = new boolean[m];
+			for (int c: columns) {
+				assertTrue(c >= 0 && c < m && !used[c]);
+				used[c] = true;
+			}
+			assertEquals(bruteForce(cost, n, m, 0, new boolean[m]), total(cost, m, columns), 1e-9);
+		}
+	}
+
+	private static double total(double[] cost, int m, int[] columns) {
+		double total = 0;
+		for (int row = 0; row < columns.length; row++) {
+			total += cost[row * m + columns[row]];
+		}
+		return total;
+	}
+
+	private static double bruteForce(double[] cost, int n, int m, int row, boolean[] used) {
+		if (row == n) { return 0; }
+		double best = Double.POSITIVE_INFINITY;
+		for (int c = 0; c < m; c++) {
+			if (used[c]) { continue; }
+			used[c] = true;
+			best = Math.min(best, cost[row * m + c] + bruteForce(cost, n, m, row + 1, used));
+			used[c] = false;
+		}
+		return best;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMoreRowsThanColumns() {
+		HungarianAlgorithm.solve(new double[6], 3, 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsShortCost() {
+		HungarianAlgorithm.solve(new double[5], 2, 3);
+	}
+}
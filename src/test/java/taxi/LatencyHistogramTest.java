@@ -0,0 +1,60 @@
+package taxi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void isEmptyWithoutValues() {
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(0, h.getCount());
+		assertTrue(Double.isNaN(h.getPercentile(50)));
+	}
+
+	@Test
+	public void isExactForSmallValues() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int v = 1; v <= 100; v++) {
+			h.add(v);
+		}
+		h.add(-5);
+		assertEquals(101, h.getCount());
+		assertEquals(0, h.getPercentile(0), 0);
+		assertEquals(50, h.getPercentile(50), 0);
+		assertEquals(98, h.getPercentile(98), 0);
+		assertEquals(100, h.getPercentile(100), 0);
+	}
+
+	/**
+	 * Durations from nanoseconds to hours, compared with the exact
+	 * percentiles of the sorted values.
+	 */
+	@Test
+	public void staysWithinTwoPercent() {
+		Random rng = new Random(11);
+		long[] values = new long[20000];
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.exp(rng.nextDouble() * Math.log(1e13));
+			h.add(values[i]);
+		}
+		h.add(Long.MAX_VALUE);
+		values = Arrays.copyOf(values, values.length + 1);
+		values[values.length - 1] = Long.MAX_VALUE;
+		Arrays.sort(values);
+
+		double[] percentiles = { 1, 10, 25, 50, 75, 90, 99, 99.9, 100 };
+		for (double p: percentiles) {
+			long rank = Math.max(1, (long) Math.ceil(p / 100 * values.length));
+			double exact = values[(int) rank - 1];
+			double estimate = h.getPercentile(p);
+			assertTrue(p + ": " + estimate + " for " + exact, Math.abs(estimate - exact) <= 0.02 * exact);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package taxi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RoadGraphTest {
+
+	/**
+	 * 0 -> 1 -> 2, 0 -> 2 and 2 -> 0, added in no particular order
+	 */
+	private static RoadGraph triangle() {
+		return new RoadGraph.Builder()
+				.addNode(2, 3, 4)
+				.addNode(0, 0, 0)
+				.addNode(1, 3, 0)
+				.addEdge(1, 2, 10, 5)
+				.addEdge(0, 1)
+				.addEdge(2, 0, 7, Double.NaN)
+				.addEdge(0, 2, 20, Double.NaN)
+				.build();
+	}
+
+	@Test
+	public void packsEdgesBySourceInOrderOfAdding() {
+		RoadGraph g = triangle();
+		assertEquals(3, g.nodeCount());
+		assertEquals(4, g.edgeCount());
+
+		assertEquals(2, g.degree(0));
+		assertEquals(1, g.target(g.firstEdge(0)));
+		assertEquals(2, g.target(g.firstEdge(0) + 1));
+		assertEquals(1, g.degree(1));
+		assertEquals(2, g.target(g.firstEdge(1)));
+		assertEquals(1, g.degree(2));
+		assertEquals(0, g.target(g.firstEdge(2)));
+		assertEquals(g.edgeCount(), g.endEdge(2));
+	}
+
+	@Test
+	public void keepsLengthsAndSpeeds() {
+		RoadGraph g = triangle();
+		// no length: straight line
+		assertEquals(3, g.length(g.firstEdge(0)), 0);
+		assertTrue(Double.isNaN(g.maxSpeed(g.firstEdge(0))));
+		assertEquals(20, g.length(g.firstEdge(0) + 1), 0);
+		assertEquals(10, g.length(g.firstEdge(1)), 0);
+		assertEquals(5, g.maxSpeed(g.firstEdge(1)), 0);
+	}
+
+	@Test
+	public void findsNodesByExactPosition() {
+		RoadGraph g = triangle();
+		for (int i = 0; i < g.nodeCount(); i++) {
+			assertEquals(i, g.nodeId(g.x(i), g.y(i)));
+			assertEquals(i, g.nodeId(g.position(i)));
+		}
+		assertEquals(0, g.nodeId(-0.0, 0.0));
+		assertEquals(-1, g.nodeId(3, 0.001));
+		assertEquals(-1, g.nodeId(1, 1));
+	}
+
+	@Test
+	public void reversesEveryEdge() {
+		RoadGraph g = triangle();
+		RoadGraph r = g.reversed();
+		assertEquals(g.edgeCount(), r.edgeCount());
+		for (int from = 0; from < g.nodeCount(); from++) {
+			for (int e = g.firstEdge(from); e < g.endEdge(from); e++) {
+				int to = g.target(e);
+				boolean found = false;
+				for (int back = r.firstEdge(to); back < r.endEdge(to); back++) {
+					found |= r.target(back) == from && r.length(back) == g.length(e);
+				}
+				assertTrue(from + " -> " + to, found);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEdgeToMissingNode() {
+		new RoadGraph.Builder().addNode(0, 0, 0).addNode(1, 1, 0).addEdge(0, 2).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsGapInIds() {
+		new RoadGraph.Builder().addNode(0, 0, 0).addNode(2, 1, 0).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNodeAddedTwice() {
+		new RoadGraph.Builder().addNode(0, 0, 0).addNode(0, 1, 0);
+	}
+
+	@Test
+	public void buildsManyNodes() {
+		RoadGraph.Builder b = new RoadGraph.Builder();
+		int n = 1000;
+		for (int i = n - 1; i >= 0; i--) {
+			b.addNode(i, i % 37, i / 37);
+			b.addEdge(i, (i + 1) % n);
+		}
+		RoadGraph g = b.build();
+		assertEquals(n, g.nodeCount());
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, g.nodeId(i % 37, i / 37));
+			assertEquals((i + 1) % n, g.target(g.firstEdge(i)));
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package taxi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RunningStatisticsTest {
+
+	@Test
+	public void isEmptyWithoutValues() {
+		RunningStatistics s = new RunningStatistics();
+		assertEquals(0, s.getCount());
+		assertTrue(Double.isNaN(s.getMean()));
+		assertTrue(Double.isNaN(s.getStandardDeviation()));
+		assertTrue(Double.isNaN(s.getMin()));
+		assertTrue(Double.isNaN(s.getMax()));
+	}
+
+	@Test
+	public void hasNoDeviationForOneValue() {
+		RunningStatistics s = new RunningStatistics();
+		s.add(-3);
+		assertEquals(1, s.getCount());
+		assertEquals(-3, s.getMean(), 0);
+		assertEquals(0, s.getStandardDeviation(), 0);
+		assertEquals(-3, s.getMin(), 0);
+		assertEquals(-3, s.getMax(), 0);
+	}
+
+	@Test
+	public void matchesTwoPassFormulas() {
+		Random rng = new Random(7);
+		double[] values = new double[10000];
+		RunningStatistics s = new RunningStatistics();
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < values.length; i++) {
+			// large offset, where the naive sum of squares loses precision
+			values[i] = 1e9 + rng.nextGaussian() * 5;
+			s.add(values[i]);
+			min = Math.min(min, values[i]);
+			max = Math.max(max, values[i]);
+		}
+
+		double sum = 0;
+		for (double v: values) {
+			sum += v;
+		}
+		double mean = sum / values.length;
+		double squares = 0;
+		for (double v: values) {
+			squares += (v - mean) * (v - mean);
+		}
+
+		assertEquals(values.length, s.getCount());
+		assertEquals(mean, s.getMean(), 1e-4);
+		assertEquals(Math.sqrt(squares / (values.length - 1)), s.getStandardDeviation(), 1e-6);
+		assertEquals(min, s.getMin(), 0);
+		assertEquals(max, s.getMax(), 0);
+	}
+}
@@ -0,0 +1,39 @@
+package taxi;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.geom.Point;
+
+public class SimpleLoggerTest {
+
+	private static Customer customer() {
+		return new Customer(Parcel.builder(new Point(0, 0), new Point(1, 0)).neededCapacity(1).buildDTO());
+	}
+
+	@Test
+	public void countsOnlyTheFirstPickupAndDelivery() {
+		SimpleLogger log = new SimpleLogger();
+		Customer a = customer();
+		Customer b = customer();
+		log.logCustomerRegistered(a, 0);
+		log.logCustomerRegistered(b, 100);
+		assertEquals(2, log.getNumberOfWaitingCustomers());
+
+		log.logCustomerPickedUp(a, 10);
+		log.logCustomerPickedUp(a, 50);
+		assertEquals(1, log.getNumberOfWaitingCustomers());
+		assertEquals(10, log.getMeanTimeFromRegisterToPickup(), 0);
+
+		log.logCustomerPickedUp(b, 130);
+		assertEquals(0, log.getNumberOfWaitingCustomers());
+		assertEquals(20, log.getMeanTimeFromRegisterToPickup(), 0);
+
+		log.logCustomerDelivered(a, 40);
+		log.logCustomerDelivered(a, 90);
+		assertEquals(1, log.getNumberOfDeliveredCustomers());
+		assertEquals(40, log.getMeanTimeFromRegisterToDelivery(), 0);
+	}
+}
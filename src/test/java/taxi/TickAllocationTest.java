@@ -0,0 +1,216 @@
+package taxi;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.rinde.rinsim.core.Simulator;
+import com.github.rinde.rinsim.core.model.pdp.DefaultPDPModel;
+import com.github.rinde.rinsim.core.model.pdp.PDPModel;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.core.model.road.RoadModel;
+import com.github.rinde.rinsim.core.model.road.RoadModelBuilders;
+import com.github.rinde.rinsim.geom.Point;
+
+/**
+ * Fails if the lookups taxi agents do every tick allocate once they have
+ * warmed up: nearest facilities, the free taxi grid, the gradient field in
+ * every mode and following a cached route. Measured at 0 bytes per call.
+ * <p>
+ * Each lookup is called WARM_UP times first, so tables built on first use
+ * and arrays that grow to their working size don't count, and then
+ * MEASURED times while the allocations of this thread are counted. RinSim's
+ * own work for the taxis (RoadModel.followPath, the objects the fleet
+ * snapshot reads from the road model) is left out, the agents can't avoid
+ * it.
+ */
+public class TickAllocationTest {
+
+	private static final String MAP_FILE = "maps/leuven.dot";
+	private static final int WARM_UP = 50000;
+	private static final int MEASURED = 50000;
+
+	private static final long SEED = 123;
+	private static final int TAXIS = 50;
+	private static final int CUSTOMERS = 200;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private com.sun.management.ThreadMXBean threads;
+	private RoadGraph map;
+	private Simulator simulator;
+	private final Random random = new Random(SEED);
+
+	/**
+	 * Something a taxi does every tick, i is the number of the call.
+	 */
+	private interface Lookup {
+		void call(int i);
+	}
+
+	@Before
+	public void setUp() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+		threads = (com.sun.management.ThreadMXBean) bean;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		map = MapCache.get(MAP_FILE);
+		simulator = Simulator.builder()
+				.setRandomSeed(SEED)
+				.addModel(RoadModelBuilders.staticGraph(map.getMultiAttributeGraph()))
+				.addModel(DefaultPDPModel.builder()).build();
+	}
+
+	private Point randomNode() {
+		return map.position(random.nextInt(map.nodeCount()));
+	}
+
+	/**
+	 * @return bytes allocated by MEASURED calls of lookup after warming up
+	 */
+	private long allocatedBy(Lookup lookup) {
+		for (int i = 0; i < WARM_UP; i++) {
+			lookup.call(i);
+		}
+		long id = Thread.currentThread().getId();
+		// reading the counter may allocate itself
+		long overhead = -threads.getThreadAllocatedBytes(id) + threads.getThreadAllocatedBytes(id);
+		long start = threads.getThreadAllocatedBytes(id);
+		for (int i = WARM_UP; i < WARM_UP + MEASURED; i++) {
+			lookup.call(i);
+		}
+		return threads.getThreadAllocatedBytes(id) - start - overhead;
+	}
+
+	private void assertNoAllocation(String what, Lookup lookup) {
+		assertEquals(what + ": bytes allocated by " + MEASURED + " calls", 0, allocatedBy(lookup));
+	}
+
+	private FacilityLocator facilities() {
+		FacilityLocator facilities = new FacilityLocator(map);
+		for (int i = 0; i < 3; i++) {
+			Point base = randomNode();
+			facilities.addBase(new TaxiBase(base, 10), base);
+			Point station = randomNode();
+			facilities.addGasStation(new GasStation(station, 10), station);
+		}
+		return facilities;
+	}
+
+	@Test
+	public void facilityLookupsDontAllocate() {
+		final FacilityLocator facilities = facilities();
+		assertNoAllocation("facilities", new Lookup() {
+			@Override
+			public void call(int i) {
+				int node = i % map.nodeCount();
+				facilities.nearestBase(node);
+				facilities.nearestGasStation(node);
+			}
+		});
+	}
+
+	@Test
+	public void freeTaxiGridDoesntAllocate() throws IOException {
+		Path file = folder.newFile().toPath();
+		DistanceOracle.write(map, file);
+		final DistanceOracle distances = DistanceOracle.read(file, map);
+		final FreeTaxiGrid grid = new FreeTaxiGrid(map);
+		FacilityLocator facilities = facilities();
+		final Taxi[] taxis = new Taxi[TAXIS];
+		for (int i = 0; i < TAXIS; i++) {
+			Point position = randomNode();
+			taxis[i] = new Taxi(position, 10, 1000, 1000, new SimpleLogger(), grid, facilities,
+					EventJournal.OFF, Quiescence.NEVER, i);
+			grid.update(taxis[i], position, true);
+		}
+		// the calls repeat after WARM_UP, so cells have grown to the size
+		// they need by then
+		assertNoAllocation("free taxi grid", new Lookup() {
+			@Override
+			public void call(int i) {
+				int node = i % map.nodeCount();
+				Taxi t = taxis[i % TAXIS];
+				t.lastNode = node;
+				grid.update(t, map.position(node), i % 7 != 0);
+				Point p = map.position((node * 31) % map.nodeCount());
+				grid.findNearest(p, 5000);
+				grid.findNearest(p, 5000, distances, map.nodeId(p));
+			}
+		});
+	}
+
+	private GradientField field(GradientField.Mode mode, DistanceOracle distances) {
+		GradientField field = new GradientField(simulator.getModelProvider().getModel(RoadModel.class), map,
+				simulator.getRandomGenerator(), 2, 0.5, mode);
+		if (distances != null) {
+			field.useNetworkDistances(distances);
+		}
+		field.getCustomerRegistry().listenTo(simulator.getModelProvider().getModel(PDPModel.class));
+		return field;
+	}
+
+	@Test
+	public void gradientFieldDoesntAllocate() throws IOException {
+		Path file = folder.newFile().toPath();
+		DistanceOracle.write(map, file);
+		DistanceOracle distances = DistanceOracle.read(file, map);
+		GradientField[] fields = {
+			field(GradientField.Mode.EXACT, null),
+			field(GradientField.Mode.EXACT, distances),
+			field(GradientField.Mode.INCREMENTAL, null),
+			field(GradientField.Mode.APPROXIMATE, null),
+		};
+		String[] names = {"exact", "exact over routes", "incremental", "approximate"};
+		for (int i = 0; i < CUSTOMERS; i++) {
+			simulator.register(new Customer(Parcel.builder(randomNode(), randomNode()).neededCapacity(1)
+					.buildDTO()));
+		}
+		final TaxiGradient[] taxis = new TaxiGradient[TAXIS];
+		for (int i = 0; i < TAXIS; i++) {
+			taxis[i] = new TaxiGradient(randomNode(), 10, 1000, 1000, fields[0], new SimpleLogger(),
+					EventJournal.OFF, Quiescence.NEVER, i);
+			simulator.register(taxis[i]);
+		}
+
+		final GradientFieldPoint direction = new GradientFieldPoint(null, 0);
+		for (int m = 0; m < fields.length; m++) {
+			final GradientField field = fields[m];
+			field.getFleetSnapshot().tick(null);
+			assertNoAllocation(names[m], new Lookup() {
+				@Override
+				public void call(int i) {
+					field.getApproximateDirection(taxis[i % TAXIS], direction);
+				}
+			});
+		}
+	}
+
+	@Test
+	public void followingCachedRouteDoesntAllocate() {
+		final RoadModel roadModel = simulator.getModelProvider().getModel(RoadModel.class);
+		final Taxi taxi = new Taxi(randomNode(), 10, 1000, 1000, new SimpleLogger(), new FreeTaxiGrid(map),
+				facilities(), EventJournal.OFF, Quiescence.NEVER, 0);
+		simulator.register(taxi);
+		final RouteCache route = new RouteCache(map);
+		final Point destination = randomNode();
+		assertNoAllocation("route", new Lookup() {
+			@Override
+			public void call(int i) {
+				route.path(roadModel, taxi, destination);
+			}
+		});
+	}
+}